@@ -51,18 +51,27 @@ public class AirlineRes extends Reservation{
         this.departFlight = departFlight;
     }
 
+    public Flight getReturnFlight() {
+        return returnFlight;
+    }
+
+    public void setReturnFlight(Flight returnFlight) {
+        this.returnFlight = returnFlight;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         if (!super.equals(o)) return false;
         AirlineRes that = (AirlineRes) o;
-        return Objects.equals(user, that.user) && Objects.equals(airline, that.airline) && Objects.equals(departFlight, that.departFlight);
+        return Objects.equals(user, that.user) && Objects.equals(airline, that.airline) && Objects.equals(departFlight, that.departFlight)
+                && Objects.equals(returnFlight, that.returnFlight);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), user, airline, departFlight);
+        return Objects.hash(super.hashCode(), user, airline, departFlight, returnFlight);
     }
 
     @Override
@@ -71,6 +80,7 @@ public class AirlineRes extends Reservation{
                 "user=" + user +
                 ", airline='" + airline + '\'' +
                 ", flight=" + departFlight +
+                (returnFlight != null ? ", returnFlight=" + returnFlight : "") +
                 '}';
     }
 }
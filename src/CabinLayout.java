@@ -0,0 +1,153 @@
+/**
+ * File: CabinLayout.java
+ *
+ * Purpose: The seats of an aircraft cabin as rows of seatsPerRow seats. Seat
+ * numbers run row by row, so seat (row * seatsPerRow + position) is row
+ * row + 1, letter 'A' + position, e.g. seat 8 of a 6-across cabin is 2C.
+ *
+ * It also finds groups of adjacent free seats in a row a 64-seat word at a
+ * time. Inverting a word of the SeatInventory bitmap gives the free seats;
+ * ANDing that with itself shifted right by 1 to n - 1 places leaves a bit
+ * set only where n free seats in a row start. The shifts pull in bits from
+ * the next word, so runs that cross a word boundary are found too. A mask of
+ * the positions where a run of n fits inside one row, worked out once per
+ * layout, removes runs that wrap into the next row. The first remaining bit
+ * is the group nearest the front. Finding a group therefore costs about n
+ * word operations per 64 seats, whatever the number of rows. The group is
+ * then taken with SeatInventory's all-or-nothing claim, and searched again
+ * if someone took part of it in between.
+ *
+ * Usage instructions:
+ *
+ * CabinLayout cabin = new CabinLayout(30, 6);
+ * int[] seats = cabin.claimTogether(inventory, 4);   //null if no row has 4 free together
+ * cabin.label(seats[0]);                             //e.g. "7B"
+ */
+public class CabinLayout {
+
+    //20 rows of 6, the 120 seats every flight used to have
+    public static final CabinLayout STANDARD = new CabinLayout(20, 6);
+
+    private final int rows;
+    private final int seatsPerRow;
+    //runStarts[n] has a bit for every seat where n adjacent seats fit in its row
+    private final long[][] runStarts;
+
+    public CabinLayout(int rows, int seatsPerRow) {
+        if (rows < 1) {
+            throw new IllegalArgumentException("rows must be at least 1, got " + rows);
+        }
+        if (seatsPerRow < 1 || seatsPerRow > 26) {
+            throw new IllegalArgumentException("seatsPerRow must be between 1 and 26, got " + seatsPerRow);
+        }
+        this.rows = rows;
+        this.seatsPerRow = seatsPerRow;
+        int numWords = (rows * seatsPerRow + 63) >>> 6;
+        this.runStarts = new long[seatsPerRow + 1][numWords];
+        for (int n = 1; n <= seatsPerRow; n++) {
+            for (int row = 0; row < rows; row++) {
+                for (int position = 0; position + n <= seatsPerRow; position++) {
+                    int seat = row * seatsPerRow + position;
+                    runStarts[n][seat >>> 6] |= 1L << seat;
+                }
+            }
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    public int getNumSeats() {
+        return rows * seatsPerRow;
+    }
+
+    // An empty inventory for one flight with this cabin.
+    public SeatInventory newInventory() {
+        return new SeatInventory(getNumSeats());
+    }
+
+    // The seat's row and letter, like "12C".
+    public String label(int seat) {
+        if (seat < 0 || seat >= getNumSeats()) {
+            throw new IllegalArgumentException("Seat " + seat + " is not between 0 and " + (getNumSeats() - 1));
+        }
+        return (seat / seatsPerRow + 1) + String.valueOf((char) ('A' + seat % seatsPerRow));
+    }
+
+    /**
+     * Purpose: Finds the first group of n adjacent free seats in one row.
+     *
+     * @param inventory, is the flight's seats, made for this layout
+     * @param n, is the group size, from 1 to seatsPerRow
+     * @return the first seat of the group, or -1 if no row has n free together
+     */
+    public int findTogether(SeatInventory inventory, int n) {
+        checkGroup(inventory, n);
+        long[] starts = runStarts[n];
+        for (int word = 0; word < starts.length; word++) {
+            if (starts[word] == 0) {
+                continue;
+            }
+            long free = ~inventory.word(word);
+            long nextFree = word + 1 < starts.length ? ~inventory.word(word + 1) : 0;
+            //a bit survives only if the seats 0 to n - 1 places after it are all free
+            long runs = free;
+            for (int shift = 1; shift < n && runs != 0; shift++) {
+                runs &= (free >>> shift) | (nextFree << (64 - shift));
+            }
+            runs &= starts[word];
+            if (runs != 0) {
+                return (word << 6) + Long.numberOfTrailingZeros(runs);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Purpose: Claims n adjacent seats in one row, the group nearest the front
+     * of the cabin.
+     *
+     * @param inventory, is the flight's seats, made for this layout
+     * @param n, is the group size, from 1 to seatsPerRow
+     * @return the seats claimed, or null if no row has n free together
+     */
+    public int[] claimTogether(SeatInventory inventory, int n) {
+        while (true) {
+            int first = findTogether(inventory, n);
+            if (first < 0) {
+                return null;
+            }
+            int[] seats = new int[n];
+            for (int i = 0; i < n; i++) {
+                seats[i] = first + i;
+            }
+            //lost a race for part of the group, so look again
+            if (inventory.claim(seats)) {
+                return seats;
+            }
+        }
+    }
+
+    private void checkGroup(SeatInventory inventory, int n) {
+        if (inventory.getCapacity() != getNumSeats()) {
+            throw new IllegalArgumentException("Inventory has " + inventory.getCapacity() + " seats, the cabin "
+                    + getNumSeats());
+        }
+        if (n < 1 || n > seatsPerRow) {
+            throw new IllegalArgumentException("Groups must be 1 to " + seatsPerRow + " seats, got " + n);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CabinLayout{" +
+                "rows=" + rows +
+                ", seatsPerRow=" + seatsPerRow +
+                '}';
+    }
+}
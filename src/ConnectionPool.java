@@ -0,0 +1,241 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File: ConnectionPool.java
+ *
+ * Purpose: A small bounded pool of JDBC connections. At most maxSize
+ * connections are ever open; callers beyond that wait up to a timeout for one
+ * to come back. Idle connections are checked before they are handed out and
+ * replaced if they went bad. The Connection a caller gets is a wrapper whose
+ * close() gives the real connection back to the pool, so the normal
+ * try-with-resources pattern is all a caller needs.
+ *
+ * Usage instructions:
+ *
+ * try (Connection conn = Database.getPool().getConnection();
+ *      PreparedStatement statement = conn.prepareStatement(query)) {
+ *     ...
+ * }
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    //seconds Connection.isValid may take before an idle connection is thrown away
+    private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+    private final String connectionString;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    //one permit per connection that may still be handed out
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+    private volatile boolean closed;
+
+    //pool metrics
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong returned = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    public ConnectionPool(String connectionString, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1, got " + maxSize);
+        }
+        this.connectionString = connectionString;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Purpose: Borrows a connection, waiting if all of them are in use.
+     * Closing the returned connection gives it back to the pool.
+     *
+     * @return a connection in auto-commit mode
+     * @throws SQLException, if none frees up in time or a new one cannot be opened
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        waitNanos.addAndGet(System.nanoTime() - start);
+
+        try {
+            Connection physical = takeIdle();
+            if (physical == null) {
+                physical = open(connectionString);
+                created.incrementAndGet();
+            }
+            borrowed.incrementAndGet();
+            return wrap(physical);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /*
+     * Opens a brand new connection. Subclasses can override this to apply
+     * settings to every connection the pool creates.
+     */
+    protected Connection open(String connectionString) throws SQLException {
+        return DriverManager.getConnection(connectionString);
+    }
+
+    // Returns an idle connection that still works, or null if there is none.
+    private Connection takeIdle() {
+        Connection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            try {
+                if (physical.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return physical;
+                }
+            } catch (SQLException e) {
+                //treated as invalid below
+            }
+            discard(physical);
+        }
+        return null;
+    }
+
+    // Called when a borrower closes its connection.
+    private void giveBack(Connection physical) {
+        returned.incrementAndGet();
+        try {
+            if (closed || physical.isClosed()) {
+                discard(physical);
+            } else {
+                //the next borrower expects a clean auto-commit connection
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                idle.offerFirst(physical);
+            }
+        } catch (SQLException e) {
+            discard(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void discard(Connection physical) {
+        discarded.incrementAndGet();
+        try {
+            physical.close();
+        } catch (SQLException e) {
+            System.out.println("Error: " + e);
+        }
+    }
+
+    private Connection wrap(Connection physical) {
+        AtomicBoolean released = new AtomicBoolean();
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (released.compareAndSet(false, true)) {
+                    giveBack(physical);
+                }
+                return null;
+            } else if (name.equals("isClosed")) {
+                return released.get() || physical.isClosed();
+            } else if (released.get()) {
+                throw new SQLException("Connection has been returned to the pool");
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    // Connections currently borrowed.
+    public int getActive() {
+        return maxSize - permits.availablePermits();
+    }
+
+    // Open connections waiting to be borrowed.
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getBorrowed() {
+        return borrowed.get();
+    }
+
+    public long getReturned() {
+        return returned.get();
+    }
+
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    // Average time a successful borrower waited for a connection, in milliseconds.
+    public double getAverageWaitMillis() {
+        long count = borrowed.get();
+        return count == 0 ? 0 : waitNanos.get() / 1e6 / count;
+    }
+
+    // Closes every idle connection. Borrowed ones are closed when they come back.
+    @Override
+    public void close() {
+        closed = true;
+        Connection physical;
+        while ((physical = idle.pollFirst()) != null) {
+            discard(physical);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool{" +
+                "active=" + getActive() +
+                ", idle=" + getIdle() +
+                ", max=" + maxSize +
+                ", created=" + getCreated() +
+                ", borrowed=" + getBorrowed() +
+                ", returned=" + getReturned() +
+                ", discarded=" + getDiscarded() +
+                ", timeouts=" + getTimeouts() +
+                ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis()) +
+                '}';
+    }
+}
@@ -20,13 +20,40 @@ import java.util.*;
  * graph.getNumNodes()
  * List<Integer> list = graph.getNeighbors(v);
  *
+ * Lookups use a compressed-sparse-row copy of the edges that is built
+ * the first time it is needed after an addEdge call. Once built, lookups
+ * only read a volatile field and never lock, so many threads can search one
+ * graph at once. To walk the out-edges of v without boxing:
+ *
+ * for (int e = graph.edgesStart(v), end = graph.edgesEnd(v); e < end; e++)
+ *     graph.edgeTarget(e), graph.edgeTime(e), graph.edgeCost(e)
+ *
  */
 public class DGraph {
 
-    //an ArrayList to store all edges
-    private final List<Edge> edges = new ArrayList<>();
-    //this maps a city to a List of integers containing its neighbors
-    private final Map<Integer, List<Integer>> neighborsMap = new HashMap<>();
+    //edges are stored in parallel primitive arrays in the order they were added
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private double[] edgeTime = new double[16];
+    private double[] edgeCost = new double[16];
+    private int numEdges;
+    //the largest node id seen so far, in case an edge names a node past numNodes
+    private int maxNode;
+
+    /*
+     * Frozen compressed-sparse-row (CSR) form of the edges. The out-edges of
+     * node v are at indices csrOffsets[v] (inclusive) to csrOffsets[v + 1]
+     * (exclusive), sorted by target. It is rebuilt lazily after addEdge.
+     */
+    private volatile int[] csrOffsets;
+    private int[] csrTargets;
+    private double[] csrTimes;
+    private double[] csrCosts;
+    //the same edges grouped by target instead, for searches that run backwards
+    private int[] inOffsets;
+    private int[] inSources;
+    private double[] inTimes;
+    private double[] inCosts;
 
     private final int numNodes;
     private final String airLineName;
@@ -37,6 +64,58 @@ public class DGraph {
     public DGraph(int numNodes, String airlineName) {
         this.numNodes = numNodes;
         this.airLineName = airlineName;
+        this.maxNode = numNodes;
+    }
+
+    /**
+     * Purpose: Builds a graph around edge arrays that were filled in directly,
+     * for example by MtxLoader. The arrays are used as they are, not copied,
+     * so the caller must not change them afterwards.
+     *
+     * @param numNodes, is the number of nodes/cities
+     * @param airlineName, is the airline this graph belongs to
+     * @param from, holds the first node of every edge
+     * @param to, holds the second node of every edge
+     * @param time, holds the time of every edge
+     * @param cost, holds the cost of every edge
+     * @param count, is how many entries of the arrays are edges
+     * @return the new DGraph
+     */
+    static DGraph fromEdges(int numNodes, String airlineName, int[] from, int[] to, double[] time,
+                            double[] cost, int count) {
+        DGraph dGraph = new DGraph(numNodes, airlineName);
+        if (from.length == 0) {
+            return dGraph;
+        }
+        dGraph.edgeFrom = from;
+        dGraph.edgeTo = to;
+        dGraph.edgeTime = time;
+        dGraph.edgeCost = cost;
+        dGraph.numEdges = count;
+        for (int e = 0; e < count; e++) {
+            dGraph.maxNode = Math.max(dGraph.maxNode, Math.max(from[e], to[e]));
+        }
+        return dGraph;
+    }
+
+    /*
+     * The edge arrays in the order the edges were added, for GraphSnapshot.
+     * Only the first getNumEdges() entries are edges. Do not modify them.
+     */
+    int[] edgeFromArray() {
+        return edgeFrom;
+    }
+
+    int[] edgeToArray() {
+        return edgeTo;
+    }
+
+    double[] edgeTimeArray() {
+        return edgeTime;
+    }
+
+    double[] edgeCostArray() {
+        return edgeCost;
     }
 
     public String getAirlineName() {
@@ -53,10 +132,23 @@ public class DGraph {
      * @param time is the time in hours to travel from city V to city W
      */
     public void addEdge(int v, int w, double time, double cost) {
-        Edge edge = new Edge(v, w, time, cost);
-        addNeighbors(v, w);
-        edges.add(edge);
-
+        assert time >= 0.0;
+        assert cost >= 0.0;
+        if (numEdges == edgeFrom.length) {
+            int newLength = edgeFrom.length * 2;
+            edgeFrom = Arrays.copyOf(edgeFrom, newLength);
+            edgeTo = Arrays.copyOf(edgeTo, newLength);
+            edgeTime = Arrays.copyOf(edgeTime, newLength);
+            edgeCost = Arrays.copyOf(edgeCost, newLength);
+        }
+        edgeFrom[numEdges] = v;
+        edgeTo[numEdges] = w;
+        edgeTime[numEdges] = time;
+        edgeCost[numEdges] = cost;
+        numEdges++;
+        maxNode = Math.max(maxNode, Math.max(v, w));
+        //the CSR form no longer matches the edge list
+        csrOffsets = null;
     }
 
     /*
@@ -66,56 +158,201 @@ public class DGraph {
         return numNodes;
     }
 
+    /*
+     * Returns the largest node id used by this graph. This is numNodes unless
+     * an edge named a node past it.
+     */
+    public int getMaxNode() {
+        return maxNode;
+    }
+
+    /*
+     * Returns the number of edges in this graph.
+     */
+    public int getNumEdges() {
+        return numEdges;
+    }
+
     // Returns the weight for the given edge.
     // Returns -1 if there is no edge between the nodes node1 and node2.
     public double getWeight(int node1, int node2, String choice) {
-        double weight = -1;
+        int edge = findEdge(node1, node2);
+        if (edge < 0) {
+            return -1;
+        }
 
         if (choice.equals("cost")) {
             //then calculate the monetary cost of this edge
-            for (Edge edge : edges) {
-                if (edge.node1 == node1 && edge.node2 == node2) {
-                    weight = edge.cost;
-                    break;
-                }
-            }
+            return csrCosts[edge];
         } else if (choice.equals("time")) {
             //calculate the distance between the two nodes
-            for (Edge edge : edges) {
-                if (edge.node1 == node1 && edge.node2 == node2) {
-                    weight = edge.time;
-                    break;
-                }
-            }
-        } else {
-            //do both
+            return csrTimes[edge];
         }
+        return -1;
+    }
 
+    /**
+     * Purpose: Builds the CSR arrays from the edge list if they are out of date.
+     * Edges are bucketed by target and then by source with two stable counting
+     * sorts, so each row ends up sorted by target and duplicate edges keep the
+     * order they were added in.
+     */
+    public void freeze() {
+        //once built, the common case, no lock is needed
+        if (csrOffsets == null) {
+            build();
+        }
+    }
 
-        return weight;
+    private synchronized void build() {
+        if (csrOffsets != null) {
+            return;
+        }
+        int[] byTarget = new int[numEdges];
+        int[] counts = new int[maxNode + 2];
+        for (int e = 0; e < numEdges; e++) {
+            counts[edgeTo[e] + 1]++;
+        }
+        for (int v = 1; v < counts.length; v++) {
+            counts[v] += counts[v - 1];
+        }
+        int[] inStarts = Arrays.copyOf(counts, counts.length);
+        for (int e = 0; e < numEdges; e++) {
+            byTarget[counts[edgeTo[e]]++] = e;
+        }
+        int[] sources = new int[numEdges];
+        double[] inEdgeTimes = new double[numEdges];
+        double[] inEdgeCosts = new double[numEdges];
+        for (int slot = 0; slot < numEdges; slot++) {
+            int e = byTarget[slot];
+            sources[slot] = edgeFrom[e];
+            inEdgeTimes[slot] = edgeTime[e];
+            inEdgeCosts[slot] = edgeCost[e];
+        }
+
+        int[] offsets = new int[maxNode + 2];
+        for (int e = 0; e < numEdges; e++) {
+            offsets[edgeFrom[e] + 1]++;
+        }
+        for (int v = 1; v < offsets.length; v++) {
+            offsets[v] += offsets[v - 1];
+        }
+        int[] next = Arrays.copyOf(offsets, offsets.length);
+        int[] targets = new int[numEdges];
+        double[] times = new double[numEdges];
+        double[] costs = new double[numEdges];
+        for (int e : byTarget) {
+            int slot = next[edgeFrom[e]]++;
+            targets[slot] = edgeTo[e];
+            times[slot] = edgeTime[e];
+            costs[slot] = edgeCost[e];
+        }
+        csrTargets = targets;
+        csrTimes = times;
+        csrCosts = costs;
+        inOffsets = inStarts;
+        inSources = sources;
+        inTimes = inEdgeTimes;
+        inCosts = inEdgeCosts;
+        //assigned last so other threads never see a half built CSR
+        csrOffsets = offsets;
     }
 
-    /*
-     * Purpose: This private method takes in a node and that
-     * node's neighbor, and adds it to their associated List
-     * of neighbors.
-     *
-     * @param node, is the node having its neighbors updated
+    /**
+     * Purpose: Finds the CSR index of the edge (node1, node2) with a binary
+     * search over node1's row. If there are duplicate edges the first one
+     * added is returned.
      *
-     * @param neighbor, is the new neighbor
+     * @param node1 is the departure node
+     * @param node2 is the arrival node
+     * @return the edge index to use with edgeTarget/edgeTime/edgeCost, or -1
      */
-    private void addNeighbors(int node, int neighbor) {
-        if (node != neighbor) {
-            if (neighborsMap.get(node) != null) {
-                List<Integer> neighbors = neighborsMap.get(node);
-                neighbors.add(neighbor);
-                neighborsMap.replace(node, neighbors);
+    public int findEdge(int node1, int node2) {
+        int[] offsets = frozenOffsets();
+        if (node1 < 0 || node1 > maxNode) {
+            return -1;
+        }
+        int low = offsets[node1];
+        int high = offsets[node1 + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (csrTargets[mid] < node2) {
+                low = mid + 1;
             } else {
-                List<Integer> newNeighborsList = new ArrayList<>();
-                newNeighborsList.add(neighbor);
-                neighborsMap.put(node, newNeighborsList);
+                high = mid - 1;
             }
         }
+        if (low < offsets[node1 + 1] && csrTargets[low] == node2) {
+            return low;
+        }
+        return -1;
+    }
+
+    /*
+     * Returns csrOffsets, building the CSR first only if it is out of date.
+     * Reading the volatile field also makes the other CSR arrays visible, as
+     * build() assigns it last, so a frozen graph is read without locking.
+     */
+    private int[] frozenOffsets() {
+        int[] offsets = csrOffsets;
+        if (offsets == null) {
+            freeze();
+            offsets = csrOffsets;
+        }
+        return offsets;
+    }
+
+    // Returns the index of the first out-edge of node, see findEdge.
+    public int edgesStart(int node) {
+        int[] offsets = frozenOffsets();
+        return node < 0 || node > maxNode ? 0 : offsets[node];
+    }
+
+    // Returns one past the index of the last out-edge of node.
+    public int edgesEnd(int node) {
+        int[] offsets = frozenOffsets();
+        return node < 0 || node > maxNode ? 0 : offsets[node + 1];
+    }
+
+    public int edgeTarget(int edge) {
+        return csrTargets[edge];
+    }
+
+    public double edgeTime(int edge) {
+        return csrTimes[edge];
+    }
+
+    public double edgeCost(int edge) {
+        return csrCosts[edge];
+    }
+
+    // Returns the time or the cost of the edge depending on choice.
+    public double edgeWeight(int edge, String choice) {
+        return choice.equals("cost") ? csrCosts[edge] : csrTimes[edge];
+    }
+
+    // Returns the index of the first edge into node, for use with inEdgeSource/inEdgeTime/inEdgeCost.
+    public int inEdgesStart(int node) {
+        frozenOffsets();
+        return node < 0 || node > maxNode ? 0 : inOffsets[node];
+    }
+
+    // Returns one past the index of the last edge into node.
+    public int inEdgesEnd(int node) {
+        frozenOffsets();
+        return node < 0 || node > maxNode ? 0 : inOffsets[node + 1];
+    }
+
+    public int inEdgeSource(int inEdge) {
+        return inSources[inEdge];
+    }
+
+    public double inEdgeTime(int inEdge) {
+        return inTimes[inEdge];
+    }
+
+    public double inEdgeCost(int inEdge) {
+        return inCosts[inEdge];
     }
 
     /**
@@ -126,8 +363,16 @@ public class DGraph {
      * @return A sorted list of node's neighbors.
      */
     public List<Integer> getNeighbors(int node) {
-        Collections.sort(neighborsMap.get(node));
-        return neighborsMap.get(node);
+        List<Integer> neighbors = new ArrayList<>();
+        int end = edgesEnd(node);
+        for (int edge = edgesStart(node); edge < end; edge++) {
+            int neighbor = csrTargets[edge];
+            //self loops and duplicate edges are not separate neighbors
+            if (neighbor != node && (neighbors.isEmpty() || neighbors.get(neighbors.size() - 1) != neighbor)) {
+                neighbors.add(neighbor);
+            }
+        }
+        return neighbors;
     }
 
     /* --------------------------------------- */
@@ -143,8 +388,9 @@ public class DGraph {
         // Iterate over the edges in order.
         // The error is obvious as you need to use a proper data structure first
         // that stores edges.
-        for (Edge e : edges) {
-            dot_str += e.toDotString() + "\n";
+        for (int e = 0; e < numEdges; e++) {
+            Edge edge = new Edge(edgeFrom[e], edgeTo[e], edgeTime[e], edgeCost[e]);
+            dot_str += edge.toDotString() + "\n";
         }
         return dot_str + "}\n";
     }
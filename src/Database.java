@@ -0,0 +1,77 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * File: Database.java
+ *
+ * Purpose: The one place that knows where the SQLite database lives and owns
+ * the ConnectionPool every class borrows its connections from. The pool is
+ * created the first time it is needed, at which point the schema is brought
+ * up to date with SchemaMigrations, and it is closed when the JVM exits.
+ * Every connection it opens is set up by the StorageConfig (WAL, pragmas,
+ * busy timeout).
+ *
+ * Usage instructions:
+ *
+ * List<Flight> flights = Database.run(conn -> ...);   //retried while busy
+ *
+ * try (Connection conn = Database.getPool().getConnection()) {
+ *     ...
+ * }
+ */
+public final class Database {
+
+    public static final String DB_NAME = "flightres.db";
+    public static final String CONNECTION_STRING = "jdbc:sqlite:" + DB_NAME;
+
+    private static final int POOL_SIZE = 8;
+    private static final long BORROW_TIMEOUT_MILLIS = 5000;
+
+    private static final StorageConfig CONFIG = StorageConfig.defaults();
+
+    private static ConnectionPool pool;
+
+    private Database() {
+    }
+
+    public static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            pool = new ConnectionPool(CONNECTION_STRING, POOL_SIZE, BORROW_TIMEOUT_MILLIS) {
+                @Override
+                protected Connection open(String connectionString) throws SQLException {
+                    Connection conn = super.open(connectionString);
+                    try {
+                        CONFIG.apply(conn);
+                    } catch (SQLException e) {
+                        conn.close();
+                        throw e;
+                    }
+                    return conn;
+                }
+            };
+            Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "connection-pool-close"));
+            try (Connection conn = pool.getConnection()) {
+                SchemaMigrations.migrate(conn);
+            } catch (SQLException e) {
+                System.out.println("Error: " + e);
+            }
+        }
+        return pool;
+    }
+
+    public static StorageConfig getConfig() {
+        return CONFIG;
+    }
+
+    /**
+     * Purpose: Runs work on a pooled connection, retrying it with backoff while
+     * the database is busy. See StorageConfig.run.
+     *
+     * @param work, is what to do with the connection
+     * @return whatever work returns
+     * @throws SQLException, if the work fails for good
+     */
+    public static <T> T run(StorageConfig.SqlWork<T> work) throws SQLException {
+        return CONFIG.run(getPool(), work);
+    }
+}
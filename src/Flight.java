@@ -1,4 +1,5 @@
 import java.text.NumberFormat;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -49,6 +50,8 @@ public class Flight {
     private String arrivalTime;
 
     private String ID;
+    //the flights table's key, 0 for a flight that was never stored
+    private long flightNum;
 
     public String getID() {
         return ID;
@@ -58,6 +61,14 @@ public class Flight {
         this.ID = ID;
     }
 
+    public long getFlightNum() {
+        return flightNum;
+    }
+
+    public void setFlightNum(long flightNum) {
+        this.flightNum = flightNum;
+    }
+
     public void setDuration(double duration) {
         this.duration = duration;
     }
@@ -70,8 +81,6 @@ public class Flight {
     private double cost;
 
     private int numStops;
-    //holds T if seat is available and F if seat is taken
-    private boolean[] seatAvailable;
 
     // Constructor that initializes the citiesLeft with all cities 1 through
     // numCities inclusive
@@ -83,8 +92,6 @@ public class Flight {
         this.airlineName = airlineName;
         //FIXME figure out why -2
         this.numStops = -2;
-        //120 is the total number of seats
-        this.seatAvailable = new boolean[120];
         //keeps track of the cities we have visited so far
         this.visitOrder = new ArrayList<>();
         //orders the list of cities left for easier traversal
@@ -93,32 +100,60 @@ public class Flight {
         for (int i = 1; i <= numCities; i++) {
             citiesLeft.add(i);
         }
-        //since all seats are available at time of construction
-        for (int i = 0; i < 120; i++) {
-            seatAvailable[i] = true;
-        }
-
     }
 
     //empty constructor which allows us to use copyOtherIntoSelf to make a copy
     public Flight() {
     }
 
+    /**
+     * Purpose: Builds a Flight for a route that has already been found in dGraph,
+     * filling in the cost, duration and number of stops without any of the
+     * backtracking state.
+     *
+     * @param dGraph, is the airline graph the route belongs to
+     * @param path, holds the cities visited in order starting at the departure city
+     * @param length, is how many entries of path are used
+     * @return the new Flight
+     */
+    public static Flight fromPath(DGraph dGraph, int[] path, int length) {
+        Flight flight = new Flight();
+        flight.visitOrder = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            flight.visitOrder.add(path[i]);
+        }
+        flight.departCity = path[0];
+        flight.arrivalCity = path[length - 1];
+        flight.dGraph = dGraph;
+        flight.airlineName = dGraph.getAirlineName();
+        flight.numStops = length - 2;
+        flight.nonstop = flight.numStops == 0;
+        flight.flightCost(dGraph, "time");
+        flight.flightCost(dGraph, "cost");
+        return flight;
+    }
+
     public void setAirlineName(String airlineName) {
         this.airlineName = airlineName;
     }
 
     public void setVisitOrder(String visitOrder) {
-        String splitVisitOrder = visitOrder.replaceAll("[\\D]", "");
-        String[] numsAsStr = splitVisitOrder.split("");
+        //any run of non digits separates two cities, e.g. "[1, 3, 2]" or "1,3,2"
+        String[] numsAsStr = visitOrder.split("\\D+");
         List<Integer> newVisitOrder = new ArrayList<>();
 
         for (String s : numsAsStr) {
-            newVisitOrder.add(Integer.parseInt(s));
+            if (!s.isEmpty()) {
+                newVisitOrder.add(Integer.parseInt(s));
+            }
         }
         this.visitOrder = newVisitOrder;
     }
 
+    public void setVisitOrder(List<Integer> visitOrder) {
+        this.visitOrder = visitOrder;
+    }
+
     public void setDepartCity(int departCity) {
         this.departCity = departCity;
     }
@@ -201,20 +236,14 @@ public class Flight {
         return citiesLeft.contains(city);
     }
 
-    //returns TRUE if seat is available and FALSE if not
-    public boolean isSeatAvailable(int index) {
-        return seatAvailable[index];
+    //returns TRUE if the seat is available on that day and FALSE if not, by flightNum since IDs may repeat
+    public boolean isSeatAvailable(LocalDate date, int index) {
+        return SeatInventoryStore.shared().isFree(flightNum, date, index);
     }
 
-    //if one of the seats isn't available they can't make that reservation.
-    public boolean bookSeats(List<Integer> seats) {
-        for (Integer seat : seats) {
-            if (!seatAvailable[seat]) {
-                return false;
-
-            }
-        }
-        return true;
+    //claims all of the seats on that day, or none of them if one is already taken. The flight must be stored
+    public boolean bookSeats(LocalDate date, List<Integer> seats) {
+        return SeatInventoryStore.shared().claim(flightNum, date, seats.stream().mapToInt(Integer::intValue).toArray());
     }
 
     //check if our current city is the destination. If so, we can add the flight
@@ -0,0 +1,159 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * File: FlightBatchWriter.java
+ *
+ * Purpose: Bulk-loads flights into the flights and itinerary_legs tables. One connection and one
+ * PreparedStatement are used for the whole load, rows are sent to SQLite in
+ * JDBC batches, and each batch is committed as one transaction, so the load
+ * is bounded by the disk rather than by one fsync per row.
+ *
+ * Usage instructions:
+ *
+ * try (FlightBatchWriter writer = new FlightBatchWriter(Database.getPool(), 500)) {
+ *     writer.add(flight, ID);
+ * }
+ *
+ * Closing the writer commits whatever is left and gives the connection back
+ * to the pool. getRowsWritten() and getRowsPerSecond() tell how it went.
+ * A writer is meant to be used by one thread.
+ */
+public class FlightBatchWriter implements AutoCloseable {
+
+    private static final String INSERT = "INSERT INTO flights (flightNum, ID, airline, dCity, aCity, duration, " +
+            "cost, numStops, dTime) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_LEG = "INSERT INTO itinerary_legs (flightNum, legIndex, fromCity, toCity) " +
+            "VALUES (?, ?, ?, ?)";
+
+    private final Connection conn;
+    private final PreparedStatement statement;
+    private final PreparedStatement legStatement;
+    private final int batchSize;
+
+    //rows added to the current, not yet committed, batch
+    private int pending;
+    private long rowsWritten;
+    private final long startNanos;
+    private boolean failed;
+    //the key the next flight gets, this writer is assumed to be the only one
+    private long nextFlightNum;
+
+    public FlightBatchWriter(ConnectionPool pool, int batchSize) throws SQLException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+        this.conn = pool.getConnection();
+        try {
+            conn.setAutoCommit(false);
+            try (Statement max = conn.createStatement();
+                 ResultSet results = max.executeQuery("SELECT COALESCE(MAX(flightNum), 0) FROM flights")) {
+                nextFlightNum = results.next() ? results.getLong(1) + 1 : 1;
+            }
+            this.statement = conn.prepareStatement(INSERT);
+            this.legStatement = conn.prepareStatement(INSERT_LEG);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Purpose: Queues one flight for insertion, sending and committing the
+     * batch once it is full.
+     *
+     * @param flight, is the flight to store
+     * @param ID, is the flight's ID
+     * @throws IllegalStateException, wrapping the SQLException if the batch fails.
+     * The failed batch is rolled back.
+     */
+    public void add(Flight flight, String ID) {
+        try {
+            long flightNum = nextFlightNum++;
+            statement.setLong(1, flightNum);
+            statement.setString(2, ID);
+            statement.setString(3, flight.getAirlineName());
+            statement.setInt(4, flight.getDepartCity());
+            statement.setInt(5, flight.getArrivalCity());
+            statement.setDouble(6, flight.getDuration());
+            statement.setDouble(7, flight.getCost());
+            statement.setInt(8, flight.getNumStops());
+            statement.setString(9, flight.getDepartTime());
+            statement.addBatch();
+
+            List<Integer> visitOrder = flight.getVisitOrder();
+            for (int leg = 1; leg < visitOrder.size(); leg++) {
+                legStatement.setLong(1, flightNum);
+                legStatement.setInt(2, leg - 1);
+                legStatement.setInt(3, visitOrder.get(leg - 1));
+                legStatement.setInt(4, visitOrder.get(leg));
+                legStatement.addBatch();
+            }
+            pending++;
+            if (pending >= batchSize) {
+                flush();
+            }
+        } catch (SQLException e) {
+            rollback();
+            throw new IllegalStateException("Storing flights failed", e);
+        }
+    }
+
+    // Sends and commits the rows added since the last batch, rolling them all back if that fails.
+    public void flush() throws SQLException {
+        if (pending == 0) {
+            return;
+        }
+        try {
+            statement.executeBatch();
+            legStatement.executeBatch();
+            conn.commit();
+        } catch (SQLException e) {
+            rollback();
+            throw e;
+        }
+        rowsWritten += pending;
+        pending = 0;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    // Rows committed per second since the writer was opened.
+    public double getRowsPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? rowsWritten / seconds : 0;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (!failed) {
+                flush();
+            }
+        } finally {
+            statement.close();
+            legStatement.close();
+            conn.close();
+        }
+    }
+
+    private void rollback() {
+        failed = true;
+        pending = 0;
+        try {
+            statement.clearBatch();
+            legStatement.clearBatch();
+            conn.rollback();
+        } catch (SQLException e) {
+            System.out.println("Error: " + e);
+        }
+    }
+}
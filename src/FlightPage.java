@@ -0,0 +1,43 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * File: FlightPage.java
+ *
+ * Purpose: One page of flight search results and the cursor to ask for the
+ * page after it, which is null on the last page.
+ */
+public final class FlightPage {
+
+    private final List<Flight> flights;
+    private final SearchCursor next;
+
+    public FlightPage(List<Flight> flights, SearchCursor next) {
+        this.flights = Collections.unmodifiableList(flights);
+        this.next = next;
+    }
+
+    /*
+     * Builds a page from up to pageSize + 1 flights; the extra one only shows
+     * that there is another page.
+     */
+    static FlightPage of(List<Flight> fetched, int pageSize, SortOrder order) {
+        if (fetched.size() <= pageSize) {
+            return new FlightPage(fetched, null);
+        }
+        List<Flight> flights = fetched.subList(0, pageSize);
+        return new FlightPage(flights, SearchCursor.after(flights.get(pageSize - 1), order));
+    }
+
+    public List<Flight> getFlights() {
+        return flights;
+    }
+
+    public SearchCursor getNext() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/**
+ * File: FlightPipeline.java
+ *
+ * Purpose: A bounded producer-consumer queue between the code that finds
+ * flights and the code that stores them. The producer blocks once the queue is
+ * full, so only a fixed number of Flight objects are ever in memory no matter
+ * how many itineraries the graphs contain, and searching overlaps with
+ * writing to the database.
+ *
+ * Usage instructions:
+ *
+ * FlightPipeline pipeline = new FlightPipeline(1024, flight -> store(flight));
+ * pipeline.submit(flight);   //as often as needed, from one producer thread
+ * pipeline.finish();         //waits until every flight has been stored
+ */
+public class FlightPipeline {
+
+    //marks the end of the stream, never handed to the consumer
+    private static final Flight END = new Flight();
+
+    private final BlockingQueue<Flight> queue;
+    private final Consumer<Flight> consumer;
+    private final Thread worker;
+
+    private volatile RuntimeException failure;
+    private long count;
+
+    public FlightPipeline(int capacity, Consumer<Flight> consumer) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.consumer = consumer;
+        this.worker = new Thread(this::drain, "flight-pipeline");
+        //a producer that dies without calling finish should not keep the JVM alive
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Purpose: Hands a flight to the consumer thread, waiting while the queue is full.
+     *
+     * @param flight, is the flight to store
+     * @throws RuntimeException, the exception the consumer threw, once it has
+     * failed, so the producer stops finding flights nobody will store
+     */
+    public void submit(Flight flight) {
+        if (failure != null) {
+            throw failure;
+        }
+        try {
+            queue.put(flight);
+            count++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing a flight", e);
+        }
+    }
+
+    /**
+     * Purpose: Signals that no more flights are coming and waits for the
+     * consumer to store the ones still queued.
+     *
+     * @return the number of flights submitted
+     * @throws RuntimeException, the first exception the consumer threw, if any
+     */
+    public long finish() {
+        try {
+            queue.put(END);
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while finishing the pipeline", e);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return count;
+    }
+
+    // True until the consumer thread has seen the end of the stream and stopped.
+    boolean isRunning() {
+        return worker.isAlive();
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Flight flight = queue.take();
+                if (flight == END) {
+                    return;
+                }
+                //after a failure keep taking flights so the producer never blocks forever
+                if (failure == null) {
+                    try {
+                        consumer.accept(flight);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
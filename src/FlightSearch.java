@@ -0,0 +1,146 @@
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * File: FlightSearch.java
+ *
+ * Purpose: Answers flight searches from the shared RouteIndex, or from
+ * another FlightSource chosen with useSource() such as a SqlFlightSource when
+ * the schedule is too big to load, and remembers the answers in a SearchCache. Traffic is mostly a few popular city pairs,
+ * so most searches are a cache hit and do not rebuild their Flights. When a
+ * popular entry expires, the callers missing on it at the same moment are
+ * coalesced by a SingleFlight and share one search instead of each running
+ * their own. The results handed out are shared between callers and cannot be
+ * modified.
+ *
+ * Anything that changes flights or prices must call invalidate() for the
+ * city pair it touched, or invalidateAll(). Seats need no invalidation:
+ * pages carry no seat data, which is read from the SeatInventoryStore when
+ * booking. Either call also drops the whole RouteIndex, which is one
+ * snapshot of every route, so the next search reads it again.
+ *
+ * Usage instructions:
+ *
+ * List<Flight> flights = FlightSearch.find(departCity, arrivalCity, nonstop);
+ * FlightPage page = FlightSearch.page(departCity, arrivalCity, nonstop, SortOrder.FASTEST, null, 10);
+ * FlightPage next = FlightSearch.page(departCity, arrivalCity, nonstop, SortOrder.FASTEST, page.getNext(), 10);
+ * FlightSearch.invalidate(departCity, arrivalCity);   //after a price change
+ * FlightSearch.useSource(new SqlFlightSource());       //search the database instead of loading the index
+ */
+public final class FlightSearch {
+
+    private static final int CACHE_SIZE = 256;
+    private static final long CACHE_TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final SearchCache<SearchKey, FlightPage> CACHE = new SearchCache<>(CACHE_SIZE, CACHE_TTL_MILLIS);
+    private static final SingleFlight<SearchKey, FlightPage> IN_FLIGHT = new SingleFlight<>();
+
+    //where searches are answered from, null for the shared RouteIndex
+    private static volatile FlightSource source;
+
+    private FlightSearch() {
+    }
+
+    // Every flight between two cities, cheapest first.
+    public static List<Flight> find(int departCity, int arrivalCity, boolean nonstop) throws SQLException {
+        return find(departCity, arrivalCity, nonstop, SortOrder.CHEAPEST, Integer.MAX_VALUE);
+    }
+
+    // The best limit flights between two cities, unmodifiable.
+    public static List<Flight> find(int departCity, int arrivalCity, boolean nonstop, SortOrder order, int limit)
+            throws SQLException {
+        return page(departCity, arrivalCity, nonstop, order, null, limit).getFlights();
+    }
+
+    /**
+     * Purpose: Gets one page of the flights between two cities. First pages,
+     * which is where nearly all traffic goes, are cached; later pages are cut
+     * straight from the source.
+     *
+     * @param departCity, is where the flights leave from
+     * @param arrivalCity, is where they land
+     * @param nonstop, is true to only get flights without stops
+     * @param order, is how to rank them
+     * @param after, is the previous page's cursor, or null for the first page
+     * @param pageSize, is the most flights on the page
+     * @return the page, best first
+     * @throws SQLException, if the flights cannot be read, or the RouteIndex had to be loaded and could not be
+     */
+    public static FlightPage page(int departCity, int arrivalCity, boolean nonstop, SortOrder order,
+                                  SearchCursor after, int pageSize) throws SQLException {
+        if (after != null) {
+            return source().page(departCity, arrivalCity, nonstop, order, after, pageSize);
+        }
+        SearchKey key = new SearchKey(departCity, arrivalCity, nonstop, order, pageSize);
+        FlightPage page = CACHE.get(key);
+        if (page == null) {
+            //everyone missing on the same key at once waits for a single search
+            page = coalesce(key, () -> {
+                FlightPage cached = CACHE.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+                //read before the search so an invalidation during it keeps the result out of the cache
+                long generation = CACHE.generation();
+                FlightPage found = source().page(departCity, arrivalCity, nonstop, order, null, pageSize);
+                CACHE.put(key, found, generation);
+                return found;
+            });
+        }
+        return page;
+    }
+
+    /**
+     * Purpose: Chooses where searches are answered from. Every cached search
+     * is dropped, so no answer from the old source is handed out afterwards.
+     *
+     * @param newSource, is the source to search, or null for the shared RouteIndex
+     */
+    public static void useSource(FlightSource newSource) {
+        source = newSource;
+        CACHE.invalidateAll();
+    }
+
+    private static FlightSource source() throws SQLException {
+        FlightSource chosen = source;
+        return chosen != null ? chosen : RouteIndex.current();
+    }
+
+    // Runs search through IN_FLIGHT, letting only SQLExceptions and unchecked exceptions out.
+    private static FlightPage coalesce(SearchKey key, Callable<FlightPage> search) throws SQLException {
+        try {
+            return IN_FLIGHT.run(key, search);
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Search for " + key + " failed", e);
+        }
+    }
+
+    /*
+     * Drops the cached searches between two cities, in both directions. The
+     * cached searches of other pairs are kept, but the RouteIndex cannot be
+     * reloaded one pair at a time, so it is dropped whole and the next search
+     * pays for reading every flight again, as after invalidateAll().
+     */
+    public static void invalidate(int city1, int city2) {
+        RouteIndex.invalidate();
+        CACHE.invalidateIf(key -> key.connects(city1, city2));
+    }
+
+    public static void invalidateAll() {
+        RouteIndex.invalidate();
+        CACHE.invalidateAll();
+    }
+
+    // For reporting hit, miss and eviction counts.
+    public static SearchCache<SearchKey, FlightPage> getCache() {
+        return CACHE;
+    }
+
+    // For reporting how many cache misses shared a search.
+    public static SingleFlight<SearchKey, FlightPage> getInFlight() {
+        return IN_FLIGHT;
+    }
+}
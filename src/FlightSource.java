@@ -0,0 +1,42 @@
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * File: FlightSource.java
+ *
+ * Purpose: Somewhere flight searches can be answered from. RouteIndex
+ * answers them from memory and SqlFlightSource from the database; both rank
+ * results the same way, by the SortOrder's key and then flightNum, and both
+ * page through them with SearchCursors so only one page is built at a time.
+ */
+public interface FlightSource {
+
+    /**
+     * Purpose: Gets one page of the flights between two cities.
+     *
+     * @param departCity, is where the flights leave from
+     * @param arrivalCity, is where they land
+     * @param nonstop, is true to only get flights without stops
+     * @param order, is how to rank them
+     * @param after, is the cursor of the previous page, or null for the first page
+     * @param pageSize, is the most flights to return, at least 1
+     * @return the page, with a cursor for the next one if there are more flights
+     * @throws SQLException, if the flights cannot be read
+     */
+    FlightPage page(int departCity, int arrivalCity, boolean nonstop, SortOrder order, SearchCursor after,
+                    int pageSize) throws SQLException;
+
+    // The best limit flights, the same as the first page of that size.
+    default List<Flight> top(int departCity, int arrivalCity, boolean nonstop, SortOrder order, int limit)
+            throws SQLException {
+        return page(departCity, arrivalCity, nonstop, order, null, limit).getFlights();
+    }
+
+    // How many flights a page of pageSize reads: one extra to tell whether there is a next page.
+    static int fetchSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1, got " + pageSize);
+        }
+        return pageSize == Integer.MAX_VALUE ? pageSize : pageSize + 1;
+    }
+}
@@ -1,41 +1,170 @@
-import java.io.File;
 import java.io.IOException;
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.text.NumberFormat;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 public class GenerateFlightsDB {
 
-    private static final String DB_NAME = "flightres.db";
-    private static final String CONNECTION_STRING = "jdbc:sqlite:" + DB_NAME;
+    //how many flights may wait between the search and the database writer
+    private static final int PIPELINE_CAPACITY = 1024;
+    private static final int DEFAULT_BATCH_SIZE = 500;
 
     private final String[] filenames;
+    private int batchSize = DEFAULT_BATCH_SIZE;
 
     public GenerateFlightsDB(String[] filenames) {
         this.filenames = filenames;
     }
 
+    /**
+     * Purpose: Finds every flight for every city pair and airline and stores
+     * them. Flights are streamed to the database through a FlightPipeline
+     * while the search is still running, so memory use stays flat. With more
+     * than one processor the search runs on all of them, as in
+     * generateFlightsParallel.
+     */
     public void generateFlights() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        if (processors > 1) {
+            generateFlightsParallel(processors);
+            return;
+        }
         List<DGraph> dGraphList = generateDGraphs();
+        storeAll(pipeline -> findAllFlights(dGraphList, pipeline::submit));
+    }
 
-        //findAvailableFlights(1, 5, dGraphList);
+    /**
+     * Purpose: Same as generateFlights, but the work for every city pair and
+     * airline, and within that every first hop out of the departure city, is
+     * spread over a ForkJoinPool. Results are joined back in the order the
+     * sequential version produces them, so the table ends up the same. At most
+     * a few route tasks per worker are in flight at once, which keeps memory
+     * bounded while the writer catches up.
+     *
+     * @param parallelism, is the number of worker threads to use
+     */
+    public void generateFlightsParallel(int parallelism) {
+        List<DGraph> dGraphList = generateDGraphs();
+        storeAll(pipeline -> findAllFlightsParallel(dGraphList, parallelism, pipeline::submit));
+    }
 
-        for (int startCity = 1; startCity < 5; startCity++) {
-            for (int arrivalCity = startCity+1; arrivalCity < 6; arrivalCity++) {
+    /**
+     * Purpose: Finds every flight for every city pair and airline on the
+     * calling thread, in the order they are stored.
+     *
+     * @param dGraphList, holds one DGraph per airline
+     * @param sink, receives every flight found
+     */
+    static void findAllFlights(List<DGraph> dGraphList, Consumer<Flight> sink) {
+        for (int[] pair : cityPairs(numCities(dGraphList))) {
+            findAvailableFlights(pair[0], pair[1], dGraphList, sink);
+        }
+    }
+
+    /**
+     * Purpose: Finds the same flights as findAllFlights, in the same order,
+     * using a ForkJoinPool of parallelism workers.
+     *
+     * @param dGraphList, holds one DGraph per airline
+     * @param parallelism, is the number of worker threads to use
+     * @param sink, receives every flight found, always on the calling thread
+     */
+    static void findAllFlightsParallel(List<DGraph> dGraphList, int parallelism, Consumer<Flight> sink) {
+        List<RouteTask> tasks = new ArrayList<>();
+        for (int[] pair : cityPairs(numCities(dGraphList))) {
+            for (DGraph dGraph : dGraphList) {
+                tasks.add(new RouteTask(pair[0], pair[1], dGraph));
+            }
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        int window = parallelism * 2;
+        try {
+            int submitted = 0;
+            for (int i = 0; i < tasks.size(); i++) {
+                while (submitted < tasks.size() && submitted < i + window) {
+                    pool.execute(tasks.get(submitted++));
+                }
+                for (Flight flight : tasks.get(i).join()) {
+                    sink.accept(flight);
+                }
+                //let go of the flights once they are queued
+                tasks.set(i, null);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    // Sets how many rows go into each JDBC batch and transaction when storing flights.
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /*
+     * Opens one FlightBatchWriter and a FlightPipeline feeding it, lets the
+     * producer fill the pipeline, and then waits for every flight to be stored.
+     * Cached searches and the RouteIndex are dropped afterwards so the next
+     * search sees the new flights.
+     */
+    private void storeAll(Consumer<FlightPipeline> producer) {
+        try (FlightBatchWriter writer = new FlightBatchWriter(Database.getPool(), batchSize)) {
+            FlightPipeline pipeline = new FlightPipeline(PIPELINE_CAPACITY,
+                    flight -> writer.add(flight, genID(flight.getAirlineName())));
+            try {
+                producer.accept(pipeline);
+            } finally {
+                //the writer must not close while flights are still queued
+                pipeline.finish();
+            }
+            writer.flush();
+            System.out.printf("Stored %d flights (%.0f rows/second).%n", writer.getRowsWritten(),
+                    writer.getRowsPerSecond());
+        } catch (SQLException | IllegalStateException e) {
+            System.out.println("Error: " + e);
+        } finally {
+            //searches should see the new flights, even the ones stored before a failure
+            FlightSearch.invalidateAll();
+        }
+    }
+
+    /*
+     * Lists the (departCity, arrivalCity) pairs to generate: first every pair
+     * going up (1 to 2, 1 to 3, ...) and then every pair going down (n to n - 1, ...).
+     */
+    private static List<int[]> cityPairs(int numCities) {
+        List<int[]> pairs = new ArrayList<>();
+        for (int startCity = 1; startCity < numCities; startCity++) {
+            for (int arrivalCity = startCity + 1; arrivalCity <= numCities; arrivalCity++) {
                 //generates all flights from 1 to 5, 2 to 5, 3 to 5, etc...
-                findAvailableFlights(startCity, arrivalCity, dGraphList);
+                pairs.add(new int[]{startCity, arrivalCity});
             }
         }
 
-        for (int startCity = 5; startCity > 1; startCity--) {
-            for (int arrivalCity = startCity-1; arrivalCity >0; arrivalCity--) {
+        for (int startCity = numCities; startCity > 1; startCity--) {
+            for (int arrivalCity = startCity - 1; arrivalCity > 0; arrivalCity--) {
                 //generates all flights from 5 to 4, 5 to 3, etc....
-                findAvailableFlights(startCity, arrivalCity, dGraphList);
+                pairs.add(new int[]{startCity, arrivalCity});
             }
         }
+        return pairs;
+    }
+
+    private static int numCities(List<DGraph> dGraphList) {
+        int numCities = 0;
+        for (DGraph dGraph : dGraphList) {
+            numCities = Math.max(numCities, dGraph.getNumNodes());
+        }
+        return numCities;
     }
 
     private List<DGraph> generateDGraphs() {
@@ -47,9 +176,9 @@ public class GenerateFlightsDB {
         DGraph americanDgraph;
 
         try {
-            unitedDgraph = read(filenames[0]);
-            americanDgraph = read(filenames[1]);
-            deltaDgraph = read(filenames[2]);
+            unitedDgraph = GraphSnapshot.loadOrCreate(filenames[0]);
+            americanDgraph = GraphSnapshot.loadOrCreate(filenames[1]);
+            deltaDgraph = GraphSnapshot.loadOrCreate(filenames[2]);
 
             dGraphList.add(unitedDgraph);
             dGraphList.add(americanDgraph);
@@ -64,123 +193,91 @@ public class GenerateFlightsDB {
     }
 
     /**
-     * Purpose:
+     * Purpose: Finds every flight from departCity to arrivalCity on each
+     * airline and queues it for storage.
      *
-     * @param departCity
-     * @param arrivalCity
-     * @param dGraphList
+     * @param departCity, is the city the flights leave from
+     * @param arrivalCity, is the city the flights end at
+     * @param dGraphList, holds one DGraph per airline
+     * @param sink, receives every flight found
      */
-    private void findAvailableFlights(int departCity, int arrivalCity, List<DGraph> dGraphList) {
-        //stores all the airline flights, so it should be size 3 at the end
-       // Map<String, List<Flight>> airlineFlights = new HashMap<>();
-        //this stores one airline's flights
-        List<Flight> flights;
-
+    private static void findAvailableFlights(int departCity, int arrivalCity, List<DGraph> dGraphList,
+                                             Consumer<Flight> sink) {
         for (DGraph dGraph : dGraphList) {
             //iterates over the three airlines
-            Flight flight = new Flight(dGraph, 5, departCity, arrivalCity, dGraph.getAirlineName());
-            flight.chooseNextCity(departCity);
-
             //find all permutations where the last city = arrivalCity
-            flights = getAllFlights(departCity, arrivalCity, dGraph, flight);
-
-           // String airline = dGraph.getAirlineName();
-          //  airlineFlights.put(airline, flights);
-            storeFlights(flights, dGraph);
+            new PathEnumerator(dGraph).enumerate(departCity, arrivalCity,
+                    (path, length) -> sink.accept(toFlight(dGraph, path, length)));
         }
+    }
 
-
-
+    private static Flight toFlight(DGraph dGraph, int[] path, int length) {
+        Flight flight = Flight.fromPath(dGraph, path, length);
+        //FIXME: This isn't storing the correct departure/arrival times
+        flight.setDepartTime();
+        return flight;
     }
 
-    /**
-     * Purpose:
-     *
-     * @param departCity
-     * @param arrivalCity
-     * @param dGraph
-     * @param currFlight
-     * @return
+    /*
+     * Finds every flight for one city pair on one airline. The subtree under
+     * each first hop out of departCity is forked as its own task so that work
+     * stealing can balance pairs with very different numbers of routes.
      */
-    private List<Flight> getAllFlights(int departCity, int arrivalCity, DGraph dGraph, Flight currFlight) {
-        //this will store the order in which the flight reaches each city.
-        List<Integer> visitOrder = new ArrayList<>();
-        //we add departcity here because it will always depart from the same city
-        visitOrder.add(departCity);
+    private static class RouteTask extends RecursiveTask<List<Flight>> {
+        private static final long serialVersionUID = 1L;
 
-        List<Flight> flights = new ArrayList<>();
+        private final int departCity;
+        private final int arrivalCity;
+        private final DGraph dGraph;
 
-        return getAllFlightsHelper(dGraph, currFlight, visitOrder, arrivalCity, 0, flights);
-    }
+        RouteTask(int departCity, int arrivalCity, DGraph dGraph) {
+            this.departCity = departCity;
+            this.arrivalCity = arrivalCity;
+            this.dGraph = dGraph;
+        }
 
-    /**
-     * Purpose:
-     *
-     * @param dGraph
-     * @param currFlight
-     * @param visitOrder
-     * @param arrivalCity
-     * @param count
-     * @param flights
-     * @return
-     */
-    private List<Flight> getAllFlightsHelper(DGraph dGraph, Flight currFlight, List<Integer> visitOrder,
-                                             int arrivalCity, int count, List<Flight> flights) {
-
-        List<Integer> neighbors = dGraph.getNeighbors(visitOrder.get(count));
-        //base case - if there are no permutations that end at the arrival city left
-        if (currFlight.currentCity() == arrivalCity) {
-            //IMPORTANT!!!! We need to make a copy of the flight and add THAT to flights
-            //Otherwise the pointer continues to point at the currFlight object and updates it with the others.
-            Flight flight = new Flight();
-
-            flight.copyOtherIntoSelf(currFlight);
-            //FIXME: This isn't storing the correct departure/arrival times
-            flight.setDepartTime();
-            flights.add(flight);
-
-        } else {
-            //recursive case
-            for (Integer neighbor : neighbors) {
-                if (currFlight.isCityAvailable(neighbor)) {
-                    //choose
-                    currFlight.chooseNextCity(neighbor);
-                    visitOrder.add(neighbor);
-                    //explore
-                    getAllFlightsHelper(dGraph, currFlight, visitOrder, arrivalCity, count + 1, flights);
-                    //un-choose
-                    currFlight.unchooseLastCity();
-                    visitOrder.remove(neighbor);
+        @Override
+        protected List<Flight> compute() {
+            List<FirstHopTask> hops = new ArrayList<>();
+            int start = dGraph.edgesStart(departCity);
+            int end = dGraph.edgesEnd(departCity);
+            for (int edge = start; edge < end; edge++) {
+                int hop = dGraph.edgeTarget(edge);
+                if (hop != departCity && (edge == start || dGraph.edgeTarget(edge - 1) != hop)) {
+                    hops.add(new FirstHopTask(departCity, hop, arrivalCity, dGraph));
                 }
             }
+            invokeAll(hops);
+
+            //joined in fork order, which is the order the sequential search uses
+            List<Flight> flights = new ArrayList<>();
+            for (FirstHopTask hop : hops) {
+                flights.addAll(hop.join());
+            }
+            return flights;
         }
-        return flights;
     }
 
-    private void storeFlights(List<Flight> flights, DGraph dGraph) {
-
-        for (Flight flight : flights) {
-
-            try {
-                String airlineName = flight.getAirlineName();
-
-                String ID = genID(airlineName);
-
-                double time = flight.flightCost(dGraph, "time");
-                double cost = flight.flightCost(dGraph, "cost");
+    // Finds every flight for one city pair whose first hop is firstHop.
+    private static class FirstHopTask extends RecursiveTask<List<Flight>> {
+        private static final long serialVersionUID = 1L;
 
-                Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-                Statement statement = conn.createStatement();
-                String query = "INSERT INTO flights (airline, dCity, aCity, duration, cost, numStops, obj, ID, visitOrder, dTime) " +
-                        "VALUES('" + airlineName + "', '" + flight.getDepartCity() + "', '" + flight.getArrivalCity() + "', '" + time +
-                        "', '" + cost + "', '" + flight.getNumStops() + "', '"
-                        + flight + "', '" + ID + "', '" + flight.getVisitOrder() + "', '" + flight.getDepartTime() + "')";
+        private final int[] prefix;
+        private final int arrivalCity;
+        private final DGraph dGraph;
 
+        FirstHopTask(int departCity, int firstHop, int arrivalCity, DGraph dGraph) {
+            this.prefix = new int[]{departCity, firstHop};
+            this.arrivalCity = arrivalCity;
+            this.dGraph = dGraph;
+        }
 
-                statement.executeUpdate(query);
-            } catch (SQLException e) {
-                System.out.println("Error: " + e);
-            }
+        @Override
+        protected List<Flight> compute() {
+            List<Flight> flights = new ArrayList<>();
+            new PathEnumerator(dGraph).enumerate(prefix, prefix.length, arrivalCity,
+                    (path, length) -> flights.add(toFlight(dGraph, path, length)));
+            return flights;
         }
     }
 
@@ -195,46 +292,4 @@ public class GenerateFlightsDB {
         return airlineName.substring(0, 2).toUpperCase() + idNum + randomChar + otherRandomChar;
 
     }
-
-    /**
-     * Purpose: This method takes in an .mtx Sparse matrix file and reads the data
-     * to create a DGraph object containing all of the nodes, edges, and weights.
-     * The edges hold two weights: cost and time.
-     *
-     * @param filename, is the name of the .mtx file in the working directory
-     * @return dGraph, is the Directed Graph with all the graph information
-     * @throws IOException, will be thrown if the file cannot be found
-     */
-    private DGraph read(String filename) throws IOException {
-
-        Scanner scanner = new Scanner(new File(filename));
-        String line = "";
-        //TODO: CLEAN THIS UP
-        String airlineNameStr = scanner.nextLine();
-        String[] airlineSplit = airlineNameStr.split("\\s");
-        String airlineName = airlineSplit[0];
-        // read comment lines if any
-        boolean comment = true;
-        while (comment) {
-            line = scanner.nextLine();
-            comment = line.startsWith("%");
-        }
-        String[] numCitiesStr = line.split("\\s+");
-        int numCities = Integer.parseInt(numCitiesStr[0]);
-        DGraph dGraph = new DGraph(numCities, airlineName);
-        //data section
-        while (scanner.hasNext()) {
-            line = scanner.nextLine();
-            if (line == null) break;
-            String[] str = line.split("\\s+");
-            int i = Integer.parseInt(str[0].trim());
-            int j = Integer.parseInt(str[1].trim());
-
-            double time = Double.parseDouble(str[2].trim());
-            double cost = Double.parseDouble((str[3].trim()));
-            dGraph.addEdge(i, j, time, cost);
-        }
-        scanner.close();
-        return dGraph;
-    }
 }
@@ -0,0 +1,199 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File: GraphSnapshot.java
+ *
+ * Purpose: Saves a DGraph in a compact binary file and loads it back without
+ * parsing any text. The file is memory-mapped and the edge columns are copied
+ * into the graph's arrays with bulk gets, so start up no longer has to
+ * re-read the .mtx files every run.
+ *
+ * File layout (version 1, big-endian):
+ *
+ * int     magic "FGRS"
+ * int     version
+ * int     length of the airline name in bytes, then the UTF-8 name
+ *         padded with zeros to a multiple of 8 bytes
+ * int     numNodes
+ * int     numEdges
+ * int[]   first node of every edge, in the order they were added
+ * int[]   second node of every edge
+ *         zero padding to a multiple of 8 bytes
+ * double[] time of every edge
+ * double[] cost of every edge
+ *
+ * Usage instructions:
+ *
+ * GraphSnapshot.write(dGraph, "united.snap");
+ * DGraph dGraph = GraphSnapshot.read("united.snap");
+ *
+ * or, to use a snapshot kept next to the .mtx file and refresh it when the
+ * .mtx file changes:
+ * DGraph dGraph = GraphSnapshot.loadOrCreate("united.mtx");
+ */
+public class GraphSnapshot {
+
+    static final int MAGIC = 0x46475253;
+    static final int VERSION = 1;
+    //snapshots made by loadOrCreate are named after the .mtx file plus this
+    static final String EXTENSION = ".snap";
+
+    /**
+     * Purpose: Writes dGraph to filename. The file is written under a
+     * temporary name and then renamed, so a reader never sees half a snapshot.
+     *
+     * @param dGraph, is the graph to save
+     * @param filename, is where to save it
+     * @throws IOException, if the file cannot be written
+     */
+    public static void write(DGraph dGraph, String filename) throws IOException {
+        byte[] name = dGraph.getAirlineName().getBytes(StandardCharsets.UTF_8);
+        int numEdges = dGraph.getNumEdges();
+        long size = headerSize(name.length) + edgesSize(numEdges);
+
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putInt(name.length);
+                buffer.put(name);
+                buffer.position(align(buffer.position()));
+                buffer.putInt(dGraph.getNumNodes());
+                buffer.putInt(numEdges);
+
+                int position = buffer.position();
+                buffer.asIntBuffer().put(dGraph.edgeFromArray(), 0, numEdges);
+                position += numEdges * Integer.BYTES;
+                buffer.position(position);
+                buffer.asIntBuffer().put(dGraph.edgeToArray(), 0, numEdges);
+                position = align(position + numEdges * Integer.BYTES);
+                buffer.position(position);
+                buffer.asDoubleBuffer().put(dGraph.edgeTimeArray(), 0, numEdges);
+                position += numEdges * Double.BYTES;
+                buffer.position(position);
+                buffer.asDoubleBuffer().put(dGraph.edgeCostArray(), 0, numEdges);
+                buffer.force();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Purpose: Loads a DGraph saved by write.
+     *
+     * @param filename, is the snapshot file
+     * @return the graph
+     * @throws IOException, if the file cannot be read, is not a snapshot or is cut short
+     */
+    public static DGraph read(String filename) throws IOException {
+        MappedByteBuffer buffer = MtxLoader.map(filename);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a graph snapshot");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(filename + " is snapshot version " + version + ", expected " + VERSION);
+            }
+            int nameLength = buffer.getInt();
+            if (nameLength < 0 || nameLength > buffer.remaining()) {
+                throw new IOException(filename + " has a bad airline name length");
+            }
+            byte[] name = new byte[nameLength];
+            buffer.get(name);
+            buffer.position(align(buffer.position()));
+            int numNodes = buffer.getInt();
+            int numEdges = buffer.getInt();
+            if (numEdges < 0 || headerSize(nameLength) + edgesSize(numEdges) != buffer.limit()) {
+                throw new IOException(filename + " is truncated or has a bad edge count");
+            }
+
+            int[] from = new int[numEdges];
+            int[] to = new int[numEdges];
+            double[] time = new double[numEdges];
+            double[] cost = new double[numEdges];
+            int position = buffer.position();
+            buffer.asIntBuffer().get(from);
+            position += numEdges * Integer.BYTES;
+            buffer.position(position);
+            buffer.asIntBuffer().get(to);
+            position = align(position + numEdges * Integer.BYTES);
+            buffer.position(position);
+            buffer.asDoubleBuffer().get(time);
+            position += numEdges * Double.BYTES;
+            buffer.position(position);
+            buffer.asDoubleBuffer().get(cost);
+
+            for (int e = 0; e < numEdges; e++) {
+                if (from[e] < 1 || to[e] < 1) {
+                    throw new IOException(filename + " has an edge with a bad city number");
+                }
+            }
+            return DGraph.fromEdges(numNodes, new String(name, StandardCharsets.UTF_8), from, to, time, cost,
+                    numEdges);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(filename + " is truncated", e);
+        }
+    }
+
+    /**
+     * Purpose: Loads the graph for an .mtx file from its snapshot if the
+     * snapshot is newer than the .mtx file. Otherwise the .mtx file is parsed
+     * and a fresh snapshot is written for next time.
+     *
+     * @param mtxFilename, is the .mtx file
+     * @return the graph
+     * @throws IOException, if neither file can be read
+     */
+    public static DGraph loadOrCreate(String mtxFilename) throws IOException {
+        File mtx = new File(mtxFilename);
+        File snapshot = new File(mtxFilename + EXTENSION);
+        if (snapshot.isFile() && snapshot.lastModified() >= mtx.lastModified()) {
+            try {
+                return read(snapshot.getPath());
+            } catch (IOException e) {
+                System.out.println("Ignoring bad snapshot " + snapshot + ": " + e.getMessage());
+            }
+        }
+        DGraph dGraph = MtxLoader.load(mtxFilename);
+        try {
+            write(dGraph, snapshot.getPath());
+        } catch (IOException e) {
+            //the graph is still usable, it will just be parsed again next time
+            System.out.println("Could not write snapshot " + snapshot + ": " + e.getMessage());
+        }
+        return dGraph;
+    }
+
+    private static long headerSize(int nameLength) {
+        return align(3 * Integer.BYTES + nameLength) + 2 * Integer.BYTES;
+    }
+
+    private static long edgesSize(int numEdges) {
+        return align(2L * numEdges * Integer.BYTES) + 2L * numEdges * Double.BYTES;
+    }
+
+    private static int align(int position) {
+        return (position + 7) & ~7;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
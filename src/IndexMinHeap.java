@@ -0,0 +1,140 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * File: IndexMinHeap.java
+ *
+ * Purpose: A binary min heap of the integers 0 to capacity - 1, each with a
+ * double priority. Because every item knows its slot in the heap, decreaseKey
+ * runs in O(log n) without searching, which is what Dijkstra's algorithm needs.
+ * Nothing is allocated after construction, so one heap can be reused across
+ * many searches with clear().
+ *
+ * Usage instructions:
+ *
+ * IndexMinHeap heap = new IndexMinHeap(numNodes + 1);
+ * heap.insertOrDecrease(node, distance);
+ * int closest = heap.popMin();
+ */
+public class IndexMinHeap {
+
+    //heap[i] is the item stored in slot i
+    private final int[] heap;
+    //position[item] is the slot holding item, or -1 if it is not in the heap
+    private final int[] position;
+    private final double[] keys;
+    private int size;
+
+    public IndexMinHeap(int capacity) {
+        this.heap = new int[capacity];
+        this.position = new int[capacity];
+        this.keys = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int item) {
+        return position[item] >= 0;
+    }
+
+    // Returns the priority of item. Only meaningful while it is in the heap.
+    public double keyOf(int item) {
+        return keys[item];
+    }
+
+    /**
+     * Purpose: Adds item with the given priority, or lowers its priority if it
+     * is already in the heap. A higher priority than the current one is ignored.
+     *
+     * @param item, is the item to add
+     * @param key, is its priority
+     * @return true if the heap changed
+     */
+    public boolean insertOrDecrease(int item, double key) {
+        if (position[item] < 0) {
+            keys[item] = key;
+            heap[size] = item;
+            position[item] = size;
+            siftUp(size);
+            size++;
+            return true;
+        } else if (key < keys[item]) {
+            keys[item] = key;
+            siftUp(position[item]);
+            return true;
+        }
+        return false;
+    }
+
+    // Returns the item with the smallest priority without removing it.
+    public int peekMin() {
+        if (size == 0) {
+            throw new NoSuchElementException("heap is empty");
+        }
+        return heap[0];
+    }
+
+    // Removes and returns the item with the smallest priority.
+    public int popMin() {
+        int min = peekMin();
+        size--;
+        position[min] = -1;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    // Empties the heap in O(size) so it can be reused for another search.
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int slot) {
+        int item = heap[slot];
+        double key = keys[item];
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (keys[heap[parent]] <= key) {
+                break;
+            }
+            heap[slot] = heap[parent];
+            position[heap[slot]] = slot;
+            slot = parent;
+        }
+        heap[slot] = item;
+        position[item] = slot;
+    }
+
+    private void siftDown(int slot) {
+        int item = heap[slot];
+        double key = keys[item];
+        int half = size >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[slot] = heap[child];
+            position[heap[slot]] = slot;
+            slot = child;
+        }
+        heap[slot] = item;
+        position[item] = slot;
+    }
+}
@@ -0,0 +1,191 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File: ItineraryBooking.java
+ *
+ * Purpose: Books every leg of an itinerary (say the flight out and the flight
+ * back) as one all-or-nothing operation, without a global lock. The legs are
+ * claimed one at a time in a fixed order, by date then flightNum, with
+ * SeatInventory's lock-free claim. If any leg is taken, the legs already
+ * claimed are released again in reverse order and the booking fails, so an
+ * itinerary is never left half-booked. Bookings on different flights never
+ * touch the same inventory and so never contend. Two bookings that want the
+ * same seats claim them in the same order, so the first one to reach the
+ * contended leg wins instead of both failing part-way.
+ *
+ * confirmAll() does the same for SeatHolds taken while the user was still
+ * choosing flights.
+ *
+ * Usage instructions:
+ *
+ * ItineraryBooking booking = new ItineraryBooking(SeatInventoryStore.shared());
+ * boolean booked = booking.book(List.of(
+ *         new ItineraryBooking.Leg(departFlight.getFlightNum(), departureDate, 14),
+ *         new ItineraryBooking.Leg(returnFlight.getFlightNum(), returnDate, 14)));
+ */
+public class ItineraryBooking {
+
+    /**
+     * The seats wanted on one flight on one day.
+     */
+    public static final class Leg {
+        private final long flightNum;
+        private final LocalDate date;
+        private final int[] seats;
+
+        public Leg(long flightNum, LocalDate date, int... seats) {
+            if (flightNum <= 0 || date == null) {
+                throw new IllegalArgumentException("A leg needs a stored flight and a date");
+            }
+            this.flightNum = flightNum;
+            this.date = date;
+            this.seats = seats.clone();
+        }
+
+        public long getFlightNum() {
+            return flightNum;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public int[] getSeats() {
+            return seats.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "Leg{" +
+                    "flightNum=" + flightNum +
+                    ", date=" + date +
+                    ", seats=" + Arrays.toString(seats) +
+                    '}';
+        }
+    }
+
+    //every booking claims legs in this order
+    private static final Comparator<Leg> CLAIM_ORDER =
+            Comparator.comparing(Leg::getDate).thenComparingLong(Leg::getFlightNum);
+
+    private final SeatInventoryStore store;
+
+    //booking metrics
+    private final AtomicLong booked = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+
+    public ItineraryBooking(SeatInventoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Purpose: Claims the seats of every leg, or of none of them.
+     *
+     * @param legs, are the flight-days and seats to book, in any order
+     * @return true if everything was booked, false if anything was taken and nothing was
+     */
+    public boolean book(List<Leg> legs) {
+        List<Leg> ordered = merge(legs);
+        List<Leg> claimed = new ArrayList<>(ordered.size());
+        for (Leg leg : ordered) {
+            boolean ok;
+            try {
+                ok = store.claim(leg.flightNum, leg.date, leg.seats);
+            } catch (RuntimeException e) {
+                undo(claimed);
+                throw e;
+            }
+            if (!ok) {
+                undo(claimed);
+                conflicts.incrementAndGet();
+                return false;
+            }
+            claimed.add(leg);
+        }
+        booked.incrementAndGet();
+        return true;
+    }
+
+    // Gives back every seat of a booked itinerary.
+    public void cancel(List<Leg> legs) {
+        for (Leg leg : merge(legs)) {
+            store.release(leg.flightNum, leg.date, leg.seats);
+        }
+    }
+
+    /**
+     * Purpose: Confirms every hold, or none of them. If one has already ended,
+     * the holds confirmed so far are taken back and end up released like the
+     * rest, and false is returned.
+     *
+     * @param holds, are the holds of one itinerary
+     * @return true if every hold was confirmed
+     */
+    public boolean confirmAll(List<SeatHolds.Hold> holds) {
+        List<SeatHolds.Hold> ordered = new ArrayList<>(holds);
+        ordered.sort(Comparator.comparing(SeatHolds.Hold::getDate).thenComparingLong(SeatHolds.Hold::getFlightNum));
+        for (int i = 0; i < ordered.size(); i++) {
+            if (!ordered.get(i).confirm()) {
+                for (int undo = i - 1; undo >= 0; undo--) {
+                    ordered.get(undo).unconfirm();
+                }
+                for (int rest = i + 1; rest < ordered.size(); rest++) {
+                    ordered.get(rest).release();
+                }
+                conflicts.incrementAndGet();
+                return false;
+            }
+        }
+        booked.incrementAndGet();
+        return true;
+    }
+
+    /*
+     * Sorts legs into claim order, folding legs on the same flight-day into
+     * one so a booking never conflicts with itself.
+     */
+    private static List<Leg> merge(List<Leg> legs) {
+        Map<Leg, List<int[]>> byFlightDay = new TreeMap<>(CLAIM_ORDER);
+        for (Leg leg : legs) {
+            byFlightDay.computeIfAbsent(leg, l -> new ArrayList<>()).add(leg.seats);
+        }
+        List<Leg> merged = new ArrayList<>(byFlightDay.size());
+        for (Map.Entry<Leg, List<int[]>> entry : byFlightDay.entrySet()) {
+            List<int[]> seatLists = entry.getValue();
+            if (seatLists.size() == 1) {
+                merged.add(entry.getKey());
+            } else {
+                int[] seats = seatLists.stream().flatMapToInt(Arrays::stream).distinct().toArray();
+                merged.add(new Leg(entry.getKey().flightNum, entry.getKey().date, seats));
+            }
+        }
+        return merged;
+    }
+
+    private void undo(List<Leg> claimed) {
+        for (int i = claimed.size() - 1; i >= 0; i--) {
+            Leg leg = claimed.get(i);
+            store.release(leg.flightNum, leg.date, leg.seats);
+        }
+    }
+
+    public SeatInventoryStore getStore() {
+        return store;
+    }
+
+    public long getBooked() {
+        return booked.get();
+    }
+
+    // Bookings that failed because a seat was taken.
+    public long getConflicts() {
+        return conflicts.get();
+    }
+}
@@ -0,0 +1,261 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * File: KShortestPaths.java
+ *
+ * Purpose: Lists the flights between two cities best first, one at a time,
+ * using Yen's k-shortest loopless paths algorithm on top of RouteFinder. Each
+ * call to next() costs about one Dijkstra search per city on the previous
+ * flight, so showing the best N flights costs O(N * shortest path) no matter
+ * how many flights exist in total.
+ *
+ * Usage instructions:
+ *
+ * KShortestPaths paths = new KShortestPaths(dGraph, departCity, arrivalCity, "cost");
+ * while (paths.hasNext() && shown < pageSize) {
+ *     Flight flight = paths.next();
+ * }
+ *
+ * or List<Flight> best = KShortestPaths.best(dGraph, departCity, arrivalCity, "time", 10);
+ *
+ * Flights that break a SearchConstraints passed to the constructor are
+ * skipped but still used to find the ones after them.
+ */
+public class KShortestPaths implements Iterator<Flight> {
+
+    private final DGraph dGraph;
+    private final int departCity;
+    private final int arrivalCity;
+    private final String choice;
+    private final RouteFinder finder;
+    private final SearchConstraints constraints;
+
+    //the paths already handed out, in order
+    private final List<int[]> found = new ArrayList<>();
+    //paths that might come next, cheapest first
+    private final PriorityQueue<Candidate> candidates = new PriorityQueue<>();
+    //every path that has been a candidate, so none is queued twice
+    private final Set<List<Integer>> seen = new HashSet<>();
+
+    private final boolean[] bannedNodes;
+    private final boolean[] bannedEdges;
+
+    //the next path to hand out, or null if it still has to be computed
+    private int[] nextPath;
+    private boolean started;
+    //set once no path is left, so later calls do not search again
+    private boolean exhausted;
+
+    public KShortestPaths(DGraph dGraph, int departCity, int arrivalCity, String choice) {
+        this(dGraph, departCity, arrivalCity, choice, null);
+    }
+
+    /*
+     * Only hands out flights that meet the constraints. Since flights come out
+     * in order of choice, the listing ends as soon as one goes over the limit
+     * on choice itself.
+     */
+    public KShortestPaths(DGraph dGraph, int departCity, int arrivalCity, String choice,
+                          SearchConstraints constraints) {
+        RouteFinder.checkChoice(choice);
+        this.constraints = constraints;
+        this.dGraph = dGraph;
+        this.departCity = departCity;
+        this.arrivalCity = arrivalCity;
+        this.choice = choice;
+        this.finder = new RouteFinder(dGraph);
+        this.bannedNodes = new boolean[dGraph.getMaxNode() + 1];
+        this.bannedEdges = new boolean[dGraph.getNumEdges()];
+    }
+
+    /**
+     * Purpose: Convenience method returning at most k of the best flights.
+     *
+     * @param dGraph, is the airline graph
+     * @param departCity, is the city the flights leave from
+     * @param arrivalCity, is the city the flights end at
+     * @param choice, is "cost" or "time"
+     * @param k, is the most flights to return
+     * @return up to k flights, best first
+     */
+    public static List<Flight> best(DGraph dGraph, int departCity, int arrivalCity, String choice, int k) {
+        List<Flight> flights = new ArrayList<>();
+        KShortestPaths paths = new KShortestPaths(dGraph, departCity, arrivalCity, choice);
+        while (flights.size() < k && paths.hasNext()) {
+            flights.add(paths.next());
+        }
+        return flights;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextPath == null && !exhausted) {
+            nextPath = computeNext();
+            exhausted = nextPath == null;
+        }
+        return nextPath != null;
+    }
+
+    @Override
+    public Flight next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int[] path = nextPath;
+        nextPath = null;
+        found.add(path);
+        return Flight.fromPath(dGraph, path, path.length);
+    }
+
+    private int[] computeNext() {
+        if (constraints == null) {
+            return computeNextPath();
+        }
+        if (!constraints.allowsAirline(dGraph.getAirlineName())) {
+            return null;
+        }
+        while (true) {
+            int[] path = computeNextPath();
+            if (path == null) {
+                return null;
+            }
+            Flight flight = Flight.fromPath(dGraph, path, path.length);
+            if (constraints.accepts(flight)) {
+                return path;
+            }
+            boolean overLimit = choice.equals("cost") ? flight.getCost() > constraints.getMaxPrice()
+                    : flight.getDuration() > constraints.getMaxDuration() + RouteBounds.EPSILON;
+            if (overLimit) {
+                //every later path weighs at least as much
+                candidates.clear();
+                found.clear();
+                return null;
+            }
+            //still needed to find the paths after it
+            found.add(path);
+        }
+    }
+
+    private int[] computeNextPath() {
+        if (!started) {
+            started = true;
+            int length = finder.shortestPath(departCity, arrivalCity, choice);
+            if (length == 0) {
+                return null;
+            }
+            int[] path = Arrays.copyOf(finder.getPath(), length);
+            seen.add(asList(path));
+            return path;
+        }
+        if (found.isEmpty()) {
+            return null;
+        }
+        addSpurCandidates(found.get(found.size() - 1));
+        Candidate best = candidates.poll();
+        return best == null ? null : best.path;
+    }
+
+    /*
+     * Yen's step: for every city on the last path, keep the route up to that
+     * city (the root), forbid the next hop of every found path sharing that
+     * root, and find the best detour (the spur) from there to arrivalCity.
+     */
+    private void addSpurCandidates(int[] lastPath) {
+        finder.setBannedNodes(bannedNodes);
+        finder.setBannedEdges(bannedEdges);
+        List<Integer> banned = new ArrayList<>();
+        for (int i = 0; i < lastPath.length - 1; i++) {
+            int spurCity = lastPath[i];
+            banned.clear();
+            for (int[] path : found) {
+                if (path.length > i + 1 && sharesRoot(path, lastPath, i)) {
+                    int end = dGraph.edgesEnd(spurCity);
+                    for (int edge = dGraph.findEdge(spurCity, path[i + 1]); edge >= 0 && edge < end
+                            && dGraph.edgeTarget(edge) == path[i + 1]; edge++) {
+                        bannedEdges[edge] = true;
+                        banned.add(edge);
+                    }
+                }
+            }
+            //the root cities cannot be visited again by the spur
+            for (int j = 0; j < i; j++) {
+                bannedNodes[lastPath[j]] = true;
+            }
+
+            int spurLength = finder.shortestPath(spurCity, arrivalCity, choice);
+            if (spurLength > 0) {
+                int[] path = new int[i + spurLength];
+                System.arraycopy(lastPath, 0, path, 0, i);
+                System.arraycopy(finder.getPath(), 0, path, i, spurLength);
+                if (seen.add(asList(path))) {
+                    candidates.add(new Candidate(path, pathWeight(path)));
+                }
+            }
+
+            for (int edge : banned) {
+                bannedEdges[edge] = false;
+            }
+            for (int j = 0; j < i; j++) {
+                bannedNodes[lastPath[j]] = false;
+            }
+        }
+        finder.setBannedNodes(null);
+        finder.setBannedEdges(null);
+    }
+
+    // Returns true if the first root + 1 cities of both paths are the same.
+    private static boolean sharesRoot(int[] path, int[] other, int root) {
+        for (int j = 0; j <= root; j++) {
+            if (path[j] != other[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private double pathWeight(int[] path) {
+        double weight = 0;
+        for (int i = 1; i < path.length; i++) {
+            weight += dGraph.getWeight(path[i - 1], path[i], choice);
+        }
+        return weight;
+    }
+
+    private static List<Integer> asList(int[] path) {
+        List<Integer> list = new ArrayList<>(path.length);
+        for (int city : path) {
+            list.add(city);
+        }
+        return list;
+    }
+
+    /*
+     * A possible next path and its total weight. Ties are broken by fewer
+     * stops so the order is deterministic.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        private final int[] path;
+        private final double weight;
+
+        Candidate(int[] path, double weight) {
+            this.path = path;
+            this.weight = weight;
+        }
+
+        public int compareTo(Candidate other) {
+            int byWeight = Double.compare(weight, other.weight);
+            if (byWeight != 0) {
+                return byWeight;
+            }
+            int byLength = Integer.compare(path.length, other.path.length);
+            return byLength != 0 ? byLength : Arrays.compare(path, other.path);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 import java.io.File;
 import java.io.IOException;
 import java.sql.*;
+import java.time.Clock;
+import java.time.LocalDate;
 import java.util.*;
 
 /*
@@ -57,12 +59,17 @@ import java.util.*;
  * -------------------------------------------
  */
 public class Main {
+    //how many flights a search shows at once
+    private static final int RESULTS_PER_PAGE = 10;
+    //how long chosen seats are kept while the rest of the trip is picked
+    private static final long HOLD_TTL_MILLIS = 15 * 60 * 1000;
+    private static final TimerWheel HOLD_TIMER = new TimerWheel(1000, 512);
+    private static final SeatHolds SEAT_HOLDS = new SeatHolds(SeatInventoryStore.shared(), HOLD_TIMER,
+            HOLD_TTL_MILLIS);
+    private static final ItineraryBooking BOOKING = new ItineraryBooking(SeatInventoryStore.shared());
     //temporary global variable to quit the program
     private static boolean quitApp = false;
 
-    private static final String DB_NAME = "flightres.db";
-    private static final String CONNECTION_STRING = "jdbc:sqlite:" + DB_NAME;
-
     public static void main(String[] args) {
         //initialize the scanner and user collection we'll be using throughout the app
         Scanner scanner = new Scanner(System.in);
@@ -71,6 +78,10 @@ public class Main {
 //        GenerateFlightsDB gen = new GenerateFlightsDB(args);
 //        gen.generateFlights();
 
+        //expires seat holds nobody confirmed, and drops the seats of days that have flown
+        HOLD_TIMER.start();
+        SeatInventoryStore.shared().evictDaily(HOLD_TIMER, Clock.systemDefaultZone());
+
         //begin user section of program
         welcomeMsg(scanner, null);
 
@@ -267,6 +278,7 @@ public class Main {
         boolean oneWay = false;
         String departureDate = "";
         String returnDate = "";
+        int travelers = 1;
         try {
             arrivalCity = scanner.nextInt();
             System.out.println("Is this a one-way trip? (Type YES or NO)");
@@ -274,10 +286,9 @@ public class Main {
             if (oneWayStr.equals("YES")) {
                 oneWay = true;
             }
-            System.out.println("Please enter departure date in THIS FORMAT (MM/DD/YYYY): ");
-            departureDate = scanner.next();
-            System.out.println("Please enter return date in THIS FORMAT (MM/DD/YYYY): ");
-            returnDate = scanner.next();
+            departureDate = readDate(scanner, "departure");
+            returnDate = readDate(scanner, "return");
+            travelers = readTravelers(scanner);
             System.out.println("Nonstop only? (Type YES or NO)");
             String nonstop = scanner.next().toUpperCase();
             if (nonstop.equals("YES")) {
@@ -287,13 +298,22 @@ public class Main {
             System.out.println("Error: " + e);
         }
 
+        //each chosen flight gets the party's seats held right away, so it is still there at confirmation
         Flight[] selectedFlights = new Flight[2];
+        List<SeatHolds.Hold> holds = new ArrayList<>();
         selectedFlights[0] = selectFlights(departCity, arrivalCity, isNonstop, scanner, true);
+        if (selectedFlights[0] == null || !holdSeats(selectedFlights[0], departureDate, travelers, holds)) {
+            return;
+        }
         if (!oneWay) {
             selectedFlights[1] = selectFlights(arrivalCity, departCity, isNonstop, scanner, false);
+            if (selectedFlights[1] == null || !holdSeats(selectedFlights[1], returnDate, travelers, holds)) {
+                holds.forEach(SeatHolds.Hold::release);
+                return;
+            }
         }
 
-        confirmBooking(selectedFlights, scanner, departureDate, returnDate, user);
+        confirmBooking(selectedFlights, holds, departureDate, returnDate, user);
 
     }
 
@@ -305,13 +325,32 @@ public class Main {
         } else {
             departOrReturn = "RETURN";
         }
-        List<Flight> relevantFlights = getFlights(departCity, arrivalCity, isNonstop);
-        for (int i = 0; i < relevantFlights.size(); i++) {
-            System.out.println(i + 1 + ".) " + relevantFlights.get(i).toString());
+        SortOrder order = checkOrganizationMethod(scanner, departOrReturn);
+        FlightPage page = organizeFlights(departCity, arrivalCity, isNonstop, order, null);
+        if (page.getFlights().isEmpty()) {
+            System.out.println("No " + departOrReturn + " flights found.");
+            return null;
+        }
+        //one page at a time, later pages are only fetched when asked for
+        Flight selectedFlight = null;
+        while (selectedFlight == null) {
+            List<Flight> relevantFlights = page.getFlights();
+            for (int i = 0; i < relevantFlights.size(); i++) {
+                System.out.println(i + 1 + ".) " + relevantFlights.get(i).toString());
+            }
+            if (page.hasNext()) {
+                System.out.println("Type 0 to see more flights.");
+            }
+            System.out.println("Please type the NUMBER for the " + departOrReturn + " flight you want: ");
+            int choice = scanner.nextInt();
+            if (choice == 0 && page.hasNext()) {
+                page = organizeFlights(departCity, arrivalCity, isNonstop, order, page.getNext());
+            } else if (choice >= 1 && choice <= relevantFlights.size()) {
+                selectedFlight = relevantFlights.get(choice - 1);
+            } else {
+                System.out.println("Error. Try again.");
+            }
         }
-        System.out.println("Please type the NUMBER for the " + departOrReturn + " flight you want: ");
-        int choice = scanner.nextInt();
-        Flight selectedFlight = relevantFlights.get(choice - 1);
         System.out.println("You chose this " + departOrReturn + " flight:");
         System.out.println(selectedFlight.toString());
         System.out.println("---------------------");
@@ -319,50 +358,102 @@ public class Main {
         return selectedFlight;
     }
 
-    private static void confirmBooking(Flight[] selectedFlights, Scanner scanner, String departureDate,
+    /**
+     * Purpose: Holds seats for the party on a flight on a day, adding the holds
+     * to holds. A party that fits in a row sits side by side in the row nearest
+     * the front that has room. A bigger one is split into groups of at most a
+     * row, each seated side by side, so it fills rows next to each other when
+     * the cabin is empty enough. Travelers no group can be seated for get any
+     * free seat, even apart from the others.
+     *
+     * @param flight, is the chosen flight
+     * @param date, is the day it flies, as MM/DD/YYYY
+     * @param travelers, is how many seats to hold
+     * @param holds, collects the holds of the trip
+     * @return true if the seats were held, false if the flight does not have that many free
+     * that day or the date cannot be booked
+     */
+    private static boolean holdSeats(Flight flight, String date, int travelers, List<SeatHolds.Hold> holds) {
+        CabinLayout cabin = SEAT_HOLDS.getStore().getLayout();
+        List<SeatHolds.Hold> party = new ArrayList<>();
+        boolean together = true;
+        try {
+            //no date if reading the trip failed, or a day that flew since it was typed
+            LocalDate day = SeatInventoryStore.parseDate(date);
+            int perRow = cabin.getSeatsPerRow();
+            int left = travelers;
+            //groups as even as they can be, so 8 travelers sit 4 and 4 rather than 6 and 2
+            for (int groups = (travelers + perRow - 1) / perRow; groups > 0; groups--) {
+                int group = (left + groups - 1) / groups;
+                SeatHolds.Hold hold = SEAT_HOLDS.holdTogether(flight.getFlightNum(), day, group);
+                if (hold == null) {
+                    break;
+                }
+                party.add(hold);
+                left -= group;
+            }
+            //whoever could not sit with their group takes any free seat
+            for (; left > 0; left--) {
+                together = false;
+                SeatHolds.Hold hold = SEAT_HOLDS.holdTogether(flight.getFlightNum(), day, 1);
+                if (hold == null) {
+                    party.forEach(SeatHolds.Hold::release);
+                    System.out.println("Sorry, that flight has fewer than " + travelers + " seats free on " + date
+                            + ".");
+                    return false;
+                }
+                party.add(hold);
+            }
+        } catch (IllegalArgumentException e) {
+            party.forEach(SeatHolds.Hold::release);
+            System.out.println("Error: " + e.getMessage());
+            return false;
+        }
+        StringBuilder seats = new StringBuilder();
+        for (SeatHolds.Hold hold : party) {
+            for (int seat : hold.getSeats()) {
+                seats.append(' ').append(cabin.label(seat));
+            }
+        }
+        System.out.println("Holding seats" + seats + " on " + date + ".");
+        if (!together) {
+            System.out.println("Not enough seats were free together, so some of your party sits apart.");
+        }
+        holds.addAll(party);
+        return true;
+    }
+
+    private static void confirmBooking(Flight[] selectedFlights, List<SeatHolds.Hold> holds, String departureDate,
                                        String returnDate, User user) {
         boolean oneWay = false;
         if (selectedFlights[1] == null) {
             oneWay = true;
         }
         System.out.println("Confirming booking...");
-        for (Flight flight : selectedFlights) {
-            AirlineRes airlineRes = new AirlineRes(user, flight.getAirlineName(), flight, oneWay);
-            airlineRes.setDepartureDate(departureDate);
-            airlineRes.setArrivalDate(returnDate);
-            user.setReservation(airlineRes);
-            System.out.println(airlineRes.toString());
+        //both directions are booked or neither is
+        if (!BOOKING.confirmAll(holds)) {
+            System.out.println("Sorry, your seats were released before the booking was confirmed. Please try again.");
+            return;
         }
+        //one reservation for the whole trip
+        AirlineRes airlineRes = new AirlineRes(user, selectedFlights[0].getAirlineName(), selectedFlights[0], oneWay);
+        if (!oneWay) {
+            airlineRes.setReturnFlight(selectedFlights[1]);
+        }
+        airlineRes.setDepartureDate(departureDate);
+        airlineRes.setArrivalDate(returnDate);
+        user.setReservation(airlineRes);
+        System.out.println(airlineRes.toString());
 
     }
 
-    private static List<Flight> getFlights(int departCity, int arrivalCity, boolean nonstop) {
+    private static FlightPage getFlights(int departCity, int arrivalCity, boolean nonstop, SortOrder order,
+                                         SearchCursor after, int pageSize) {
 
-        List<Flight> relevantFlights = new ArrayList<>();
-        String flightsQuery;
+        FlightPage relevantFlights = new FlightPage(new ArrayList<>(), null);
         try {
-            Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-            Statement statement = conn.createStatement();
-            if (!nonstop) {
-                flightsQuery = "SELECT * FROM flights WHERE dCity='" + departCity + "' AND aCity='" + arrivalCity + "'";
-            } else {
-                flightsQuery = "SELECT * FROM flights WHERE dCity='" + departCity + "' AND aCity='" + arrivalCity +
-                        "' AND numStops='0'";
-            }
-
-            ResultSet results = statement.executeQuery(flightsQuery);
-            while (results.next()) {
-                //calls method to create flight with all the proper info
-                Flight flight = generateFlight(results);
-
-                flight.setDepartCity(departCity);
-                flight.setArrivalCity(arrivalCity);
-
-                Flight storedFlight = new Flight();
-                storedFlight.copyOtherIntoSelf(flight);
-                relevantFlights.add(storedFlight);
-
-            }
+            //served from the cache or the in-memory index, the database is only read when the index loads
+            relevantFlights = FlightSearch.page(departCity, arrivalCity, nonstop, order, after, pageSize);
         } catch (SQLException e) {
             System.out.println("Error: " + e);
         }
@@ -370,32 +461,37 @@ public class Main {
         return relevantFlights;
     }
 
-    private static Flight generateFlight(ResultSet results) {
-        Flight flight = new Flight();
-
-        try {
-            double duration = results.getDouble("duration");
-            String cost = results.getString("cost");
-            String ID = results.getString("ID");
-            String airline = results.getString("airline");
-            String visitOrder = results.getString("visitOrder");
-            String departTime = results.getString("dTime");
-            int numStops = results.getInt("numStops");
-            boolean nonstop = numStops == 0;
-            flight.setNumStops(numStops);
-            flight.setNonStop(nonstop);
-            flight.setVisitOrder(visitOrder);
-            flight.setAirlineName(airline);
-            flight.setCost(Double.parseDouble(cost));
-            flight.setDepartTime(departTime);
-            flight.setID(ID);
-            flight.setDuration(duration);
-        } catch (SQLException e) {
-            System.out.println("error: " + e);
+    //asks for a date until it gets a real one from today on, seats are sold per day and past days are closed
+    private static String readDate(Scanner scanner, String which) {
+        while (true) {
+            System.out.println("Please enter " + which + " date in THIS FORMAT (MM/DD/YYYY): ");
+            String date = scanner.next();
+            try {
+                if (!SeatInventoryStore.parseDate(date).isBefore(LocalDate.now())) {
+                    return date;
+                }
+                System.out.println("Error: " + date + " has already gone by.");
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
         }
+    }
 
-        return flight;
-
+    //asks how many are flying until the answer fits on the plane, parties bigger than a row are split by holdSeats
+    private static int readTravelers(Scanner scanner) {
+        int most = SEAT_HOLDS.getStore().getLayout().getNumSeats();
+        while (true) {
+            System.out.println("How many travelers (1 to " + most + ")? ");
+            try {
+                int travelers = scanner.nextInt();
+                if (travelers >= 1 && travelers <= most) {
+                    return travelers;
+                }
+            } catch (InputMismatchException e) {
+                scanner.next();
+            }
+            System.out.println("Error. Try again.");
+        }
     }
 
     //short helper method to print the city names
@@ -408,47 +504,42 @@ public class Main {
     }
 
     /**
-     * Purpose:
+     * Purpose: Asks how the flights should be ordered.
      *
-     * @param flights
-     * @param airlineFlights
-     * @param nonstop
+     * @param scanner, the IO scanner object.
+     * @param departOrReturn, is DEPARTURE or RETURN
+     * @return the order picked, CHEAPEST if the answer made no sense
      */
-    private static void checkOrganizationMethod(List<Flight> flights, Map<String, List<Flight>> airlineFlights,
-                                                boolean nonstop) {
-        System.out.println("How would you like to order the available DEPARTURE flights?");
+    private static SortOrder checkOrganizationMethod(Scanner scanner, String departOrReturn) {
+        System.out.println("How would you like to order the available " + departOrReturn + " flights?");
         System.out.println("\t1. Cost (Cheapest to Most Expensive)");
         System.out.println("\t2. Time (Fastest to Longest)");
         System.out.println("\t3. Blend (Best overall flight)");
-        Scanner scanner = new Scanner(System.in);
         int choice = 0;
         try {
             choice = scanner.nextInt();
         } catch (InputMismatchException e) {
             System.out.println("Error: " + e);
+            scanner.nextLine();
         }
 
-        organizeFlights(flights, airlineFlights, nonstop, choice);
+        return SortOrder.fromChoice(choice);
     }
 
     /**
-     * Purpose:
+     * Purpose: Gets a page of the flights between two cities in the order the
+     * user picked. Only the RESULTS_PER_PAGE flights on the page are built.
      *
-     * @param flights
-     * @param airlineFlights
-     * @param nonstop
-     * @param choice
+     * @param departCity, is where the flights leave from
+     * @param arrivalCity, is where they land
+     * @param nonstop, is true to only get flights without stops
+     * @param order, is how to rank them
+     * @param after, is the cursor of the page before, or null for the first page
+     * @return up to RESULTS_PER_PAGE flights, best first
      */
-    private static void organizeFlights(List<Flight> flights, Map<String, List<Flight>> airlineFlights,
-                                        boolean nonstop, int choice) {
-
-        Map<Double, Flight> storage = new TreeMap<>();
-
-        switch (choice) {
-            case 1 -> System.out.println("chose cheapest");
-            case 2 -> System.out.println("Chose fastest");
-            case 3 -> System.out.println("Chose the blend");
-        }
+    private static FlightPage organizeFlights(int departCity, int arrivalCity, boolean nonstop, SortOrder order,
+                                              SearchCursor after) {
+        return getFlights(departCity, arrivalCity, nonstop, order, after, RESULTS_PER_PAGE);
     }
 
     /**
@@ -0,0 +1,475 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * File: MtxLoader.java
+ *
+ * Purpose: Reads an airline's .mtx Sparse Matrix file into a DGraph. This is
+ * the one loader shared by the whole program. The file is memory-mapped and
+ * the numbers are parsed straight out of the bytes, with no Scanner, no regex
+ * split and no String per token, so loading a large schedule costs about as
+ * much as reading it from disk.
+ *
+ * The file looks like this (see Main for a full example):
+ *
+ * American Airlines                      <- the first word is the airline name
+ * %%MatrixMarket matrix coordinate real general
+ * % any number of comment lines
+ * 5 5 20                                 <- numCities numCities numEdges
+ * 1 2 1.92 210.50                        <- city city time cost
+ * ...
+ *
+ * Usage instructions:
+ *
+ * DGraph dGraph = MtxLoader.load("united.mtx");
+ *
+ * For schedules with millions of edges, parse on several threads with
+ * DGraph dGraph = MtxLoader.loadParallel("schedule.mtx", threads);
+ */
+public class MtxLoader {
+
+    //chunks smaller than this are not worth a thread of their own
+    private static final int MIN_CHUNK_BYTES = 1 << 16;
+
+    private final MappedByteBuffer buffer;
+    private final String filename;
+    private int pos;
+    private final int limit;
+    //only used for error messages, 0 when a chunk does not know its line numbers
+    private int lineNumber;
+
+    private MtxLoader(MappedByteBuffer buffer, String filename) {
+        this(buffer, filename, 0, buffer.limit());
+        this.lineNumber = 1;
+    }
+
+    // A loader for just the bytes from start to limit, used for one chunk of the data section.
+    private MtxLoader(MappedByteBuffer buffer, String filename, int start, int limit) {
+        this.buffer = buffer;
+        this.filename = filename;
+        this.pos = start;
+        this.limit = limit;
+    }
+
+    /**
+     * Purpose: This method takes in an .mtx Sparse matrix file and reads the data
+     * to create a DGraph object containing all of the nodes, edges, and weights.
+     * The edges hold two weights: cost and time.
+     *
+     * @param filename, is the name of the .mtx file in the working directory
+     * @return dGraph, is the Directed Graph with all the graph information
+     * @throws IOException, will be thrown if the file cannot be found or is malformed
+     */
+    public static DGraph load(String filename) throws IOException {
+        MtxLoader loader = new MtxLoader(map(filename), filename);
+        String airlineName = loader.readAirlineName();
+        int[] size = loader.readSizeLine();
+        int numCities = size[0];
+        int expected = size[2];
+
+        int[] from = new int[expected];
+        int[] to = new int[expected];
+        double[] time = new double[expected];
+        double[] cost = new double[expected];
+        int count = 0;
+        //data section
+        while (loader.skipBlankLines()) {
+            if (count == from.length) {
+                //more edges than the header promised
+                int newLength = Math.max(16, count * 2);
+                from = Arrays.copyOf(from, newLength);
+                to = Arrays.copyOf(to, newLength);
+                time = Arrays.copyOf(time, newLength);
+                cost = Arrays.copyOf(cost, newLength);
+            }
+            from[count] = loader.readCity();
+            to[count] = loader.readCity();
+            time[count] = loader.readDouble();
+            cost[count] = loader.readDouble();
+            loader.endLine();
+            count++;
+        }
+        return DGraph.fromEdges(numCities, airlineName, from, to, time, cost, count);
+    }
+
+    /**
+     * Purpose: Loads a very large .mtx file using several threads. The data
+     * section is split into chunks that start and end on line breaks. The
+     * threads first count the edges in their chunks, which tells each chunk
+     * where its edges go, and then parse them straight into one set of
+     * pre-sized arrays. The DGraph is built from those arrays in one pass.
+     *
+     * @param filename, is the name of the .mtx file in the working directory
+     * @param threads, is the number of threads to parse with
+     * @return dGraph, is the Directed Graph with all the graph information
+     * @throws IOException, will be thrown if the file cannot be found or is malformed
+     */
+    public static DGraph loadParallel(String filename, int threads) throws IOException {
+        MappedByteBuffer buffer = map(filename);
+        MtxLoader header = new MtxLoader(buffer, filename);
+        String airlineName = header.readAirlineName();
+        int numCities = header.readSizeLine()[0];
+
+        //chunk boundaries, each one just after a line break
+        int dataStart = header.pos;
+        int limit = buffer.limit();
+        int chunks = Math.max(1, Math.min(threads, (limit - dataStart) / MIN_CHUNK_BYTES));
+        int[] bounds = new int[chunks + 1];
+        bounds[0] = dataStart;
+        for (int i = 1; i < chunks; i++) {
+            int bound = Math.max(bounds[i - 1], dataStart + (int) ((long) (limit - dataStart) * i / chunks));
+            while (bound < limit && bound > dataStart && buffer.get(bound - 1) != '\n') {
+                bound++;
+            }
+            bounds[i] = bound;
+        }
+        bounds[chunks] = limit;
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            //pass 1: count the edges in every chunk
+            List<Callable<Integer>> counts = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                int start = bounds[i];
+                int end = bounds[i + 1];
+                counts.add(() -> countDataLines(buffer, start, end));
+            }
+            int[] offsets = new int[chunks + 1];
+            List<Future<Integer>> countResults = pool.invokeAll(counts);
+            for (int i = 0; i < chunks; i++) {
+                offsets[i + 1] = offsets[i] + getResult(countResults.get(i));
+            }
+
+            //pass 2: parse every chunk into its own part of the arrays
+            int total = offsets[chunks];
+            int[] from = new int[total];
+            int[] to = new int[total];
+            double[] time = new double[total];
+            double[] cost = new double[total];
+            List<Callable<Integer>> parses = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                MtxLoader chunk = new MtxLoader(buffer, filename, bounds[i], bounds[i + 1]);
+                int offset = offsets[i];
+                parses.add(() -> chunk.readEdges(from, to, time, cost, offset));
+            }
+            for (Future<Integer> parsed : pool.invokeAll(parses)) {
+                getResult(parsed);
+            }
+            return DGraph.fromEdges(numCities, airlineName, from, to, time, cost, total);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + filename, e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Counts the lines from start to end that have something other than spaces on them.
+    private static int countDataLines(MappedByteBuffer buffer, int start, int end) {
+        int count = 0;
+        boolean blank = true;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n') {
+                if (!blank) {
+                    count++;
+                }
+                blank = true;
+            } else if (!isSpace(b) && b != '\r') {
+                blank = false;
+            }
+        }
+        return blank ? count : count + 1;
+    }
+
+    /*
+     * Parses every edge line left in this loader's range into the arrays,
+     * starting at index offset. Returns the number of edges read.
+     */
+    private int readEdges(int[] from, int[] to, double[] time, double[] cost, int offset) throws IOException {
+        int index = offset;
+        while (skipBlankLines()) {
+            from[index] = readCity();
+            to[index] = readCity();
+            time[index] = readDouble();
+            cost[index] = readDouble();
+            endLine();
+            index++;
+        }
+        return index - offset;
+    }
+
+    private static int getResult(Future<Integer> result) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    static MappedByteBuffer map(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(filename + " is too large to map (" + channel.size() + " bytes)");
+            }
+            //the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    // The first word of the first line, e.g. "United" for "United Airlines".
+    private String readAirlineName() throws IOException {
+        skipSpaces();
+        int start = pos;
+        while (pos < limit && !isSpace(buffer.get(pos)) && !isLineEnd(buffer.get(pos))) {
+            pos++;
+        }
+        if (pos == start) {
+            throw error("missing airline name");
+        }
+        byte[] name = new byte[pos - start];
+        buffer.get(start, name);
+        skipLine();
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    // Skips the % comment lines and reads "numCities numCities numEdges".
+    private int[] readSizeLine() throws IOException {
+        while (skipBlankLines() && buffer.get(pos) == '%') {
+            skipLine();
+        }
+        if (pos >= limit) {
+            throw error("missing size line");
+        }
+        int[] size = new int[3];
+        for (int i = 0; i < 3; i++) {
+            size[i] = readInt();
+        }
+        endLine();
+        return size;
+    }
+
+    /*
+     * Moves past blank lines and returns true if there is another line with
+     * something on it.
+     */
+    private boolean skipBlankLines() {
+        while (true) {
+            skipSpaces();
+            if (pos >= limit) {
+                return false;
+            }
+            if (buffer.get(pos) != '\n') {
+                return true;
+            }
+            pos++;
+            lineNumber++;
+        }
+    }
+
+    private void skipLine() {
+        while (pos < limit && buffer.get(pos) != '\n') {
+            pos++;
+        }
+        if (pos < limit) {
+            pos++;
+            lineNumber++;
+        }
+    }
+
+    // Checks that nothing but spaces is left on the line and moves to the next one.
+    private void endLine() throws IOException {
+        skipSpaces();
+        if (pos < limit && buffer.get(pos) != '\n') {
+            throw error("unexpected text at end of line");
+        }
+        skipLine();
+    }
+
+    private void skipSpaces() {
+        while (pos < limit && (isSpace(buffer.get(pos)) || buffer.get(pos) == '\r')) {
+            pos++;
+        }
+    }
+
+    private int readCity() throws IOException {
+        int city = readInt();
+        if (city < 1) {
+            throw error("city numbers start at 1, got " + city);
+        }
+        return city;
+    }
+
+    private int readInt() throws IOException {
+        skipSpaces();
+        int start = pos;
+        boolean negative = false;
+        if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (pos < limit && isDigit(buffer.get(pos))) {
+            value = value * 10 + (buffer.get(pos) - '0');
+            pos++;
+            digits++;
+            if (value > Integer.MAX_VALUE) {
+                throw error("number too large");
+            }
+        }
+        if (digits == 0 || (pos < limit && !isSpace(buffer.get(pos)) && !isLineEnd(buffer.get(pos)))) {
+            pos = start;
+            throw error("expected a whole number");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    private double readDouble() throws IOException {
+        skipSpaces();
+        int[] end = new int[1];
+        double value = parseDouble(buffer, pos, limit, end);
+        if (end[0] == pos) {
+            throw error("expected a number");
+        }
+        pos = end[0];
+        return value;
+    }
+
+    /**
+     * Purpose: Parses a decimal number starting at start. Plain numbers such as
+     * "220.50" or "1.2e3" with up to 18 significant digits are built from a long
+     * and an exact power of ten, which gives the same result as
+     * Double.parseDouble. Anything longer or stranger is handed to
+     * Double.parseDouble.
+     *
+     * @param buffer, holds the text
+     * @param start, is where the number starts
+     * @param limit, is the end of the text
+     * @param end, gets the position just after the number, or start if there is none
+     * @return the number
+     */
+    static double parseDouble(MappedByteBuffer buffer, int start, int limit, int[] end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < limit && (buffer.get(pos) == '-' || buffer.get(pos) == '+')) {
+            negative = buffer.get(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean exact = true;
+        boolean sawDigit = false;
+        while (pos < limit && isDigit(buffer.get(pos))) {
+            sawDigit = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (buffer.get(pos) - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exact = false;
+            }
+            pos++;
+        }
+        if (pos < limit && buffer.get(pos) == '.') {
+            pos++;
+            while (pos < limit && isDigit(buffer.get(pos))) {
+                sawDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (buffer.get(pos) - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    scale--;
+                } else {
+                    exact = false;
+                }
+                pos++;
+            }
+        }
+        if (!sawDigit) {
+            end[0] = start;
+            return 0;
+        }
+        if (pos < limit && (buffer.get(pos) == 'e' || buffer.get(pos) == 'E')) {
+            int expPos = pos + 1;
+            boolean expNegative = false;
+            if (expPos < limit && (buffer.get(expPos) == '-' || buffer.get(expPos) == '+')) {
+                expNegative = buffer.get(expPos) == '-';
+                expPos++;
+            }
+            int exponent = 0;
+            int expDigits = 0;
+            while (expPos < limit && isDigit(buffer.get(expPos))) {
+                exponent = Math.min(exponent * 10 + (buffer.get(expPos) - '0'), 100000);
+                expPos++;
+                expDigits++;
+            }
+            if (expDigits > 0) {
+                pos = expPos;
+                scale += expNegative ? -exponent : exponent;
+            }
+        }
+        end[0] = pos;
+        if (pos < limit && !isSpace(buffer.get(pos)) && !isLineEnd(buffer.get(pos))) {
+            //something like "1.5x", leave it for the caller to reject
+            end[0] = start;
+            return 0;
+        }
+
+        double value;
+        if (exact && mantissa < (1L << 53) && scale >= -22 && scale <= 22) {
+            value = scale < 0 ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+        } else {
+            byte[] text = new byte[pos - start];
+            buffer.get(start, text);
+            return Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+        }
+        return negative ? -value : value;
+    }
+
+    //every power of ten up to 1e22 is exact as a double
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private IOException error(String message) {
+        if (lineNumber > 0) {
+            return new IOException(filename + " line " + lineNumber + ": " + message);
+        }
+        return new IOException(filename + " byte " + pos + ": " + message);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+}
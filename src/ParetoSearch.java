@@ -0,0 +1,278 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * File: ParetoSearch.java
+ *
+ * Purpose: Finds the "blend" flights between two cities, meaning every flight
+ * that is not beaten on both cost and time by some other flight (the Pareto
+ * frontier). It is a bi-criteria label-setting search over the two weights
+ * stored in a DGraph: each city keeps only its non-dominated (cost, time)
+ * labels, and labels are settled in (cost, time) order, so dominated partial
+ * routes are dropped as soon as they appear instead of enumerating and sorting
+ * every path.
+ *
+ * Usage instructions:
+ *
+ * ParetoSearch search = new ParetoSearch(dGraph);
+ * List<Flight> blend = search.frontier(departCity, arrivalCity);
+ *
+ * The frontier comes back ordered from cheapest (and slowest) to most
+ * expensive (and fastest).
+ *
+ * Main's Blend choice does not call this. It ranks stored flights by
+ * SortOrder.BLEND instead, because a graph search finds routes, not the
+ * stored flights with IDs that can be booked.
+ */
+public class ParetoSearch {
+
+    private final DGraph dGraph;
+
+    //labels are kept in parallel arrays, a label's id is its index
+    private int[] labelCity = new int[64];
+    private double[] labelCost = new double[64];
+    private double[] labelTime = new double[64];
+    private int[] labelParent = new int[64];
+    private int[] labelLegs = new int[64];
+    private boolean[] labelDead = new boolean[64];
+    private int numLabels;
+    //true when the number of legs is a third criterion, see frontier
+    private boolean compareLegs;
+
+    //the live labels at each city
+    private int[][] cityLabels;
+    private int[] cityLabelCount;
+
+    //binary heap of label ids ordered by (cost, time)
+    private int[] heap = new int[64];
+    private int heapSize;
+
+    public ParetoSearch(DGraph dGraph) {
+        this.dGraph = dGraph;
+        dGraph.freeze();
+    }
+
+    /**
+     * Purpose: Returns the non-dominated flights from departCity to arrivalCity.
+     *
+     * @param departCity, is the city the flights leave from
+     * @param arrivalCity, is the city the flights end at
+     * @return the Pareto frontier, cheapest first. Empty if there is no route.
+     */
+    public List<Flight> frontier(int departCity, int arrivalCity) {
+        return frontier(departCity, arrivalCity, null);
+    }
+
+    /**
+     * Purpose: Returns the non-dominated flights from departCity to arrivalCity
+     * among those that meet the constraints. Labels that RouteBounds shows can
+     * no longer meet them are never created. With a stop limit a label only
+     * dominates another if it also has no more legs, since the one with fewer
+     * legs might be the only one that can still finish in time.
+     *
+     * @param departCity, is the city the flights leave from
+     * @param arrivalCity, is the city the flights end at
+     * @param constraints, are the limits to meet, or null for none
+     * @return the Pareto frontier, cheapest first. Empty if there is no route.
+     */
+    public List<Flight> frontier(int departCity, int arrivalCity, SearchConstraints constraints) {
+        List<Flight> flights = new ArrayList<>();
+        if (constraints != null && !constraints.allowsAirline(dGraph.getAirlineName())) {
+            return flights;
+        }
+        RouteBounds bounds = null;
+        if (constraints != null && constraints.limitsRoute()) {
+            bounds = new RouteBounds(dGraph, arrivalCity);
+        }
+        compareLegs = constraints != null && constraints.getMaxStops() != Integer.MAX_VALUE;
+        int nodes = dGraph.getMaxNode() + 1;
+        if (departCity < 0 || departCity >= nodes || arrivalCity < 0 || arrivalCity >= nodes
+                || departCity == arrivalCity) {
+            return flights;
+        }
+        reset(nodes);
+        push(addLabel(departCity, 0, 0, 0, -1));
+
+        int[] path = new int[nodes];
+        while (heapSize > 0) {
+            int label = pop();
+            if (labelDead[label]) {
+                continue;
+            }
+            int city = labelCity[label];
+            if (city == arrivalCity) {
+                //settled in (cost, time) order, so no later label can dominate it
+                flights.add(toFlight(label, path));
+                continue;
+            }
+            int end = dGraph.edgesEnd(city);
+            for (int edge = dGraph.edgesStart(city); edge < end; edge++) {
+                int next = dGraph.edgeTarget(edge);
+                double cost = labelCost[label] + dGraph.edgeCost(edge);
+                double time = labelTime[label] + dGraph.edgeTime(edge);
+                int legs = labelLegs[label] + 1;
+                if (bounds != null && !bounds.canMeet(next, cost, time, legs, constraints)) {
+                    continue;
+                }
+                if (isDominated(arrivalCity, cost, time, legs) || isDominated(next, cost, time, legs)) {
+                    continue;
+                }
+                removeDominatedBy(next, cost, time, legs);
+                push(addLabel(next, cost, time, legs, label));
+            }
+        }
+        if (compareLegs) {
+            //labels kept only for having fewer legs can still lose on cost and time
+            return frontierOf(flights);
+        }
+        return flights;
+    }
+
+    /**
+     * Purpose: Picks the non-dominated flights out of an already built list.
+     * frontier uses it to trim the labels kept only for having fewer legs.
+     * Runs in O(n log n).
+     *
+     * @param flights, is any list of flights
+     * @return the flights not beaten on both cost and duration, cheapest first
+     */
+    public static List<Flight> frontierOf(List<Flight> flights) {
+        List<Flight> sorted = new ArrayList<>(flights);
+        sorted.sort(Comparator.comparingDouble(Flight::getCost).thenComparingDouble(Flight::getDuration));
+        List<Flight> frontier = new ArrayList<>();
+        double bestTime = Double.POSITIVE_INFINITY;
+        for (Flight flight : sorted) {
+            if (flight.getDuration() < bestTime) {
+                frontier.add(flight);
+                bestTime = flight.getDuration();
+            }
+        }
+        return frontier;
+    }
+
+    private void reset(int nodes) {
+        numLabels = 0;
+        heapSize = 0;
+        if (cityLabels == null || cityLabels.length < nodes) {
+            cityLabels = new int[nodes][];
+            cityLabelCount = new int[nodes];
+        } else {
+            Arrays.fill(cityLabelCount, 0);
+        }
+    }
+
+    // Returns true if a live label at city is at least as good on both weights.
+    private boolean isDominated(int city, double cost, double time, int legs) {
+        int[] labels = cityLabels[city];
+        for (int i = 0; i < cityLabelCount[city]; i++) {
+            int other = labels[i];
+            if (labelCost[other] <= cost && labelTime[other] <= time && (!compareLegs || labelLegs[other] <= legs)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Kills the labels at city that the new (cost, time) label beats.
+    private void removeDominatedBy(int city, double cost, double time, int legs) {
+        int[] labels = cityLabels[city];
+        int kept = 0;
+        for (int i = 0; i < cityLabelCount[city]; i++) {
+            int other = labels[i];
+            if (cost <= labelCost[other] && time <= labelTime[other] && (!compareLegs || legs <= labelLegs[other])) {
+                labelDead[other] = true;
+            } else {
+                labels[kept++] = other;
+            }
+        }
+        cityLabelCount[city] = kept;
+    }
+
+    private int addLabel(int city, double cost, double time, int legs, int parent) {
+        if (numLabels == labelCity.length) {
+            int newLength = numLabels * 2;
+            labelCity = Arrays.copyOf(labelCity, newLength);
+            labelCost = Arrays.copyOf(labelCost, newLength);
+            labelTime = Arrays.copyOf(labelTime, newLength);
+            labelParent = Arrays.copyOf(labelParent, newLength);
+            labelLegs = Arrays.copyOf(labelLegs, newLength);
+            labelDead = Arrays.copyOf(labelDead, newLength);
+        }
+        int label = numLabels++;
+        labelCity[label] = city;
+        labelCost[label] = cost;
+        labelTime[label] = time;
+        labelParent[label] = parent;
+        labelLegs[label] = legs;
+        labelDead[label] = false;
+
+        if (cityLabels[city] == null) {
+            cityLabels[city] = new int[4];
+        } else if (cityLabelCount[city] == cityLabels[city].length) {
+            cityLabels[city] = Arrays.copyOf(cityLabels[city], cityLabelCount[city] * 2);
+        }
+        cityLabels[city][cityLabelCount[city]++] = label;
+        return label;
+    }
+
+    private Flight toFlight(int label, int[] path) {
+        int length = 0;
+        for (int l = label; l != -1; l = labelParent[l]) {
+            length++;
+        }
+        int l = label;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = labelCity[l];
+            l = labelParent[l];
+        }
+        return Flight.fromPath(dGraph, path, length);
+    }
+
+    // (cost, time) lexicographic order
+    private boolean less(int a, int b) {
+        if (labelCost[a] != labelCost[b]) {
+            return labelCost[a] < labelCost[b];
+        }
+        return labelTime[a] < labelTime[b];
+    }
+
+    private void push(int label) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int slot = heapSize++;
+        while (slot > 0) {
+            int parent = (slot - 1) >>> 1;
+            if (!less(label, heap[parent])) {
+                break;
+            }
+            heap[slot] = heap[parent];
+            slot = parent;
+        }
+        heap[slot] = label;
+    }
+
+    private int pop() {
+        int min = heap[0];
+        int last = heap[--heapSize];
+        int slot = 0;
+        int half = heapSize >>> 1;
+        while (slot < half) {
+            int child = 2 * slot + 1;
+            if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!less(heap[child], last)) {
+                break;
+            }
+            heap[slot] = heap[child];
+            slot = child;
+        }
+        if (heapSize > 0) {
+            heap[slot] = last;
+        }
+        return min;
+    }
+}
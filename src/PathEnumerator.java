@@ -0,0 +1,218 @@
+/**
+ * File: PathEnumerator.java
+ *
+ * Purpose: Walks every simple path (no city visited twice) between two cities
+ * of a DGraph and hands each one to a callback. It replaces the recursive
+ * backtracking that used to mutate a TreeSet and an ArrayList inside Flight:
+ * visited cities are bits in a long[] mask and the current path is a plain
+ * int stack, so no objects are created while searching. Only the callback
+ * decides whether a found path is worth turning into a Flight.
+ *
+ * Usage instructions:
+ *
+ * PathEnumerator enumerator = new PathEnumerator(dGraph);
+ * enumerator.enumerate(departCity, arrivalCity, (path, length) -> {
+ *     //path[0] to path[length - 1] is the route. The array is reused,
+ *     //so copy it if it has to be kept.
+ * });
+ *
+ * Pass a SearchConstraints to only see paths within a number of stops,
+ * a duration, a price and a set of airlines. Hopeless partial paths are
+ * pruned early using RouteBounds.
+ *
+ * An enumerator keeps its stacks between calls and should not be shared
+ * between threads.
+ */
+public class PathEnumerator {
+
+    /*
+     * Receives each path found. The array belongs to the enumerator and is
+     * overwritten as soon as visit returns.
+     */
+    public interface PathVisitor {
+        void visit(int[] path, int length);
+    }
+
+    private final DGraph dGraph;
+    //bit (city & 63) of visited[city >>> 6] is set while city is on the path
+    private final long[] visited;
+    //path[depth] is the city at that depth of the search
+    private final int[] path;
+    //cursor[depth] is the next CSR edge to try out of path[depth]
+    private final int[] cursor;
+    //costAt[depth] and timeAt[depth] are the totals of the path up to path[depth]
+    private final double[] costAt;
+    private final double[] timeAt;
+
+    public PathEnumerator(DGraph dGraph) {
+        this.dGraph = dGraph;
+        dGraph.freeze();
+        int nodes = dGraph.getMaxNode() + 1;
+        this.visited = new long[(nodes >>> 6) + 1];
+        this.path = new int[nodes + 1];
+        this.cursor = new int[nodes + 1];
+        this.costAt = new double[nodes + 1];
+        this.timeAt = new double[nodes + 1];
+    }
+
+    /**
+     * Purpose: Calls visitor once for every simple path from departCity to
+     * arrivalCity. Paths come out in the same order the old recursive search
+     * produced them: neighbors are tried in increasing city order.
+     *
+     * @param departCity, is the city every path starts at
+     * @param arrivalCity, is the city every path ends at
+     * @param visitor, receives each path
+     */
+    public void enumerate(int departCity, int arrivalCity, PathVisitor visitor) {
+        enumerate(departCity, arrivalCity, null, visitor);
+    }
+
+    /**
+     * Purpose: Calls visitor once for every simple path from departCity to
+     * arrivalCity that meets the constraints. A partial path is abandoned as
+     * soon as RouteBounds shows no way to finish it within them.
+     *
+     * @param departCity, is the city every path starts at
+     * @param arrivalCity, is the city every path ends at
+     * @param constraints, are the limits every path must meet, or null for none
+     * @param visitor, receives each path
+     */
+    public void enumerate(int departCity, int arrivalCity, SearchConstraints constraints, PathVisitor visitor) {
+        path[0] = departCity;
+        enumerate(path, 1, arrivalCity, constraints, visitor);
+    }
+
+    /**
+     * Purpose: Same as enumerate(departCity, arrivalCity, visitor) but only
+     * walks the paths that begin with the given cities.
+     *
+     * @param prefix, holds the first cities of every path, starting with the departure city
+     * @param prefixLength, is how many entries of prefix are used
+     * @param arrivalCity, is the city every path ends at
+     * @param visitor, receives each path
+     */
+    public void enumerate(int[] prefix, int prefixLength, int arrivalCity, PathVisitor visitor) {
+        enumerate(prefix, prefixLength, arrivalCity, null, visitor);
+    }
+
+    /**
+     * Purpose: The constrained version of enumerate(prefix, prefixLength, arrivalCity, visitor).
+     *
+     * @param prefix, holds the first cities of every path, starting with the departure city
+     * @param prefixLength, is how many entries of prefix are used
+     * @param arrivalCity, is the city every path ends at
+     * @param constraints, are the limits every path must meet, or null for none
+     * @param visitor, receives each path
+     */
+    public void enumerate(int[] prefix, int prefixLength, int arrivalCity, SearchConstraints constraints,
+                          PathVisitor visitor) {
+        RouteBounds bounds = null;
+        if (constraints != null) {
+            if (!constraints.allowsAirline(dGraph.getAirlineName())) {
+                return;
+            }
+            if (constraints.limitsRoute()) {
+                bounds = new RouteBounds(dGraph, arrivalCity);
+            }
+        }
+        enumerate(prefix, prefixLength, arrivalCity, constraints, bounds, visitor);
+    }
+
+    /*
+     * The search itself. When bounds is not null every step checks the
+     * constraints, which may be tightened by the visitor while the search
+     * runs (RouteFinder does this for branch and bound).
+     */
+    void enumerate(int[] prefix, int prefixLength, int arrivalCity, SearchConstraints constraints,
+                   RouteBounds bounds, PathVisitor visitor) {
+        if (prefix != path) {
+            System.arraycopy(prefix, 0, path, 0, prefixLength);
+        }
+        costAt[0] = 0;
+        timeAt[0] = 0;
+        for (int i = 0; i < prefixLength; i++) {
+            if (isVisited(path[i])) {
+                //the prefix itself repeats a city
+                clearPrefix(i);
+                return;
+            }
+            mark(path[i]);
+            if (i > 0) {
+                int edge = dGraph.findEdge(path[i - 1], path[i]);
+                if (edge < 0) {
+                    //the prefix is not a route in this graph
+                    clearPrefix(i + 1);
+                    return;
+                }
+                costAt[i] = costAt[i - 1] + dGraph.edgeCost(edge);
+                timeAt[i] = timeAt[i - 1] + dGraph.edgeTime(edge);
+            }
+        }
+        int depth = prefixLength - 1;
+        if (bounds != null && !bounds.canMeet(path[depth], costAt[depth], timeAt[depth], depth, constraints)) {
+            clearPrefix(prefixLength);
+            return;
+        }
+        if (path[depth] == arrivalCity) {
+            visitor.visit(path, prefixLength);
+            clearPrefix(prefixLength);
+            return;
+        }
+
+        cursor[depth] = dGraph.edgesStart(path[depth]);
+        while (depth >= prefixLength - 1) {
+            int city = path[depth];
+            int start = dGraph.edgesStart(city);
+            if (cursor[depth] < dGraph.edgesEnd(city)) {
+                int edge = cursor[depth]++;
+                int next = dGraph.edgeTarget(edge);
+                //rows are sorted, so a duplicate edge sits right after the first one
+                if ((edge > start && dGraph.edgeTarget(edge - 1) == next) || isVisited(next)) {
+                    continue;
+                }
+                costAt[depth + 1] = costAt[depth] + dGraph.edgeCost(edge);
+                timeAt[depth + 1] = timeAt[depth] + dGraph.edgeTime(edge);
+                if (bounds != null
+                        && !bounds.canMeet(next, costAt[depth + 1], timeAt[depth + 1], depth + 1, constraints)) {
+                    //bound: nothing past this hop can meet the constraints
+                    continue;
+                }
+                path[depth + 1] = next;
+                if (next == arrivalCity) {
+                    visitor.visit(path, depth + 2);
+                } else {
+                    //choose and explore
+                    mark(next);
+                    depth++;
+                    cursor[depth] = dGraph.edgesStart(next);
+                }
+            } else {
+                //un-choose
+                if (depth >= prefixLength) {
+                    unmark(city);
+                }
+                depth--;
+            }
+        }
+        clearPrefix(prefixLength);
+    }
+
+    private void clearPrefix(int length) {
+        for (int i = 0; i < length; i++) {
+            unmark(path[i]);
+        }
+    }
+
+    private boolean isVisited(int city) {
+        return (visited[city >>> 6] & (1L << city)) != 0;
+    }
+
+    private void mark(int city) {
+        visited[city >>> 6] |= 1L << city;
+    }
+
+    private void unmark(int city) {
+        visited[city >>> 6] &= ~(1L << city);
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * File: RouteBounds.java
+ *
+ * Purpose: Lower bounds on what it still takes to get from any city to one
+ * arrival city: the cheapest remaining cost, the shortest remaining time and
+ * the fewest remaining legs. They come from searches run backwards over the
+ * edges into arrivalCity, so they are computed once per query. A partial route
+ * whose cost so far plus the remaining bound already breaks a
+ * SearchConstraints limit can be dropped without exploring it further.
+ *
+ * Usage instructions:
+ *
+ * RouteBounds bounds = new RouteBounds(dGraph, arrivalCity);
+ * if (!bounds.canMeet(city, costSoFar, timeSoFar, legsSoFar, constraints)) {
+ *     //prune
+ * }
+ */
+public class RouteBounds {
+
+    //slack for sums of doubles added up in a different order
+    static final double EPSILON = 1e-9;
+    //flight costs are rounded to the cent before they are compared to a price limit
+    private static final double HALF_CENT = 0.005;
+
+    private final int arrivalCity;
+    private final double[] minCost;
+    private final double[] minTime;
+    private final int[] minLegs;
+
+    public RouteBounds(DGraph dGraph, int arrivalCity) {
+        dGraph.freeze();
+        this.arrivalCity = arrivalCity;
+        int nodes = dGraph.getMaxNode() + 1;
+        this.minCost = new double[nodes];
+        this.minTime = new double[nodes];
+        this.minLegs = new int[nodes];
+        if (arrivalCity < 0 || arrivalCity >= nodes) {
+            Arrays.fill(minCost, Double.POSITIVE_INFINITY);
+            Arrays.fill(minTime, Double.POSITIVE_INFINITY);
+            Arrays.fill(minLegs, Integer.MAX_VALUE);
+            return;
+        }
+        IndexMinHeap heap = new IndexMinHeap(nodes);
+        reverseDijkstra(dGraph, heap, true, minCost);
+        reverseDijkstra(dGraph, heap, false, minTime);
+        reverseBreadthFirst(dGraph);
+    }
+
+    public int getArrivalCity() {
+        return arrivalCity;
+    }
+
+    public double minCost(int city) {
+        return minCost[city];
+    }
+
+    public double minTime(int city) {
+        return minTime[city];
+    }
+
+    public int minLegs(int city) {
+        return minLegs[city];
+    }
+
+    // Returns true if arrivalCity can be reached from city at all.
+    public boolean canReach(int city) {
+        return minLegs[city] != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Purpose: Checks whether a partial route ending at city can still be
+     * completed within the constraints.
+     *
+     * @param city, is the last city on the partial route
+     * @param cost, is the cost of the partial route
+     * @param time, is the duration of the partial route
+     * @param legs, is the number of legs flown so far
+     * @param constraints, are the limits to meet
+     * @return false if every completion of the route breaks a limit
+     */
+    public boolean canMeet(int city, double cost, double time, int legs, SearchConstraints constraints) {
+        if (!canReach(city)) {
+            return false;
+        }
+        //a route with n legs makes n - 1 stops
+        if ((long) legs + minLegs[city] - 1 > constraints.getMaxStops()) {
+            return false;
+        }
+        if (time + minTime[city] > constraints.getMaxDuration() + EPSILON) {
+            return false;
+        }
+        return cost + minCost[city] < constraints.getMaxPrice() + HALF_CENT;
+    }
+
+    private void reverseDijkstra(DGraph dGraph, IndexMinHeap heap, boolean byCost, double[] dist) {
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        heap.clear();
+        dist[arrivalCity] = 0;
+        heap.insertOrDecrease(arrivalCity, 0);
+        while (!heap.isEmpty()) {
+            int city = heap.popMin();
+            int end = dGraph.inEdgesEnd(city);
+            for (int edge = dGraph.inEdgesStart(city); edge < end; edge++) {
+                int previous = dGraph.inEdgeSource(edge);
+                double weight = byCost ? dGraph.inEdgeCost(edge) : dGraph.inEdgeTime(edge);
+                if (dist[city] + weight < dist[previous]) {
+                    dist[previous] = dist[city] + weight;
+                    heap.insertOrDecrease(previous, dist[previous]);
+                }
+            }
+        }
+    }
+
+    private void reverseBreadthFirst(DGraph dGraph) {
+        Arrays.fill(minLegs, Integer.MAX_VALUE);
+        int[] queue = new int[minLegs.length];
+        int head = 0;
+        int tail = 0;
+        minLegs[arrivalCity] = 0;
+        queue[tail++] = arrivalCity;
+        while (head < tail) {
+            int city = queue[head++];
+            int end = dGraph.inEdgesEnd(city);
+            for (int edge = dGraph.inEdgesStart(city); edge < end; edge++) {
+                int previous = dGraph.inEdgeSource(edge);
+                if (minLegs[previous] == Integer.MAX_VALUE) {
+                    minLegs[previous] = minLegs[city] + 1;
+                    queue[tail++] = previous;
+                }
+            }
+        }
+    }
+}
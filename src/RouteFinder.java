@@ -0,0 +1,255 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * File: RouteFinder.java
+ *
+ * Purpose: Answers "cheapest" and "fastest" itinerary questions straight from
+ * a DGraph with Dijkstra's algorithm, instead of enumerating every path between
+ * two cities. A search costs O(E log V), so it stays fast on networks with
+ * hundreds of airports where the exhaustive backtracking in GenerateFlightsDB
+ * would never finish.
+ *
+ * Usage instructions:
+ *
+ * RouteFinder finder = new RouteFinder(dGraph);
+ * Flight cheapest = finder.cheapest(departCity, arrivalCity);
+ * Flight fastest = finder.fastest(departCity, arrivalCity);
+ *
+ * Pass a SearchConstraints to shortest() to limit stops, duration, price
+ * and airlines.
+ *
+ * The working arrays are reused between searches, so a RouteFinder should not
+ * be shared between threads. Give each thread its own.
+ */
+public class RouteFinder {
+
+    private final DGraph dGraph;
+    private final IndexMinHeap heap;
+    //best known distance to every node in the current search
+    private final double[] dist;
+    //the node we reached each node from, or -1
+    private final int[] parent;
+    //the path found by the last call to shortestPath
+    private final int[] path;
+    //the best route found so far by the branch and bound search
+    private final int[] bestRoute;
+    //created the first time a constrained search needs it
+    private PathEnumerator enumerator;
+
+    //nodes and CSR edges the search may not use, see KShortestPaths
+    private boolean[] bannedNodes;
+    private boolean[] bannedEdges;
+
+    public RouteFinder(DGraph dGraph) {
+        this.dGraph = dGraph;
+        dGraph.freeze();
+        int nodes = dGraph.getMaxNode() + 1;
+        this.heap = new IndexMinHeap(nodes);
+        this.dist = new double[nodes];
+        this.parent = new int[nodes];
+        this.path = new int[nodes];
+        this.bestRoute = new int[nodes];
+    }
+
+    public DGraph getDGraph() {
+        return dGraph;
+    }
+
+    // Returns the cheapest flight from departCity to arrivalCity, or null if there is none.
+    public Flight cheapest(int departCity, int arrivalCity) {
+        return shortest(departCity, arrivalCity, "cost");
+    }
+
+    // Returns the fastest flight from departCity to arrivalCity, or null if there is none.
+    public Flight fastest(int departCity, int arrivalCity) {
+        return shortest(departCity, arrivalCity, "time");
+    }
+
+    /**
+     * Purpose: Finds the flight from departCity to arrivalCity with the
+     * smallest total weight.
+     *
+     * @param departCity, is the city the flight leaves from
+     * @param arrivalCity, is the city the flight ends at
+     * @param choice, is "cost" or "time"
+     * @return the best Flight, or null if arrivalCity cannot be reached
+     */
+    public Flight shortest(int departCity, int arrivalCity, String choice) {
+        int length = shortestPath(departCity, arrivalCity, choice);
+        if (length == 0) {
+            return null;
+        }
+        return Flight.fromPath(dGraph, path, length);
+    }
+
+    /**
+     * Purpose: Finds the best flight that also meets the constraints. If the
+     * unconstrained best flight already meets them it is returned straight
+     * away. Otherwise this falls back to a branch and bound search over simple
+     * routes: RouteBounds prunes partial routes that cannot meet the limits,
+     * and every time a better flight is found the limit on choice is
+     * tightened to beat it.
+     *
+     * @param departCity, is the city the flight leaves from
+     * @param arrivalCity, is the city the flight ends at
+     * @param choice, is "cost" or "time"
+     * @param constraints, are the limits the flight must meet, or null for none
+     * @return the best Flight within the constraints, or null if there is none
+     */
+    public Flight shortest(int departCity, int arrivalCity, String choice, SearchConstraints constraints) {
+        if (constraints == null) {
+            return shortest(departCity, arrivalCity, choice);
+        }
+        if (!constraints.allowsAirline(dGraph.getAirlineName())) {
+            return null;
+        }
+        Flight best = shortest(departCity, arrivalCity, choice);
+        if (best == null || constraints.accepts(best)) {
+            //no route at all, or dropping routes cannot find anything better
+            return best;
+        }
+
+        boolean byCost = choice.equals("cost");
+        SearchConstraints bound = new SearchConstraints(constraints);
+        RouteBounds bounds = new RouteBounds(dGraph, arrivalCity);
+        int[] bestLength = {0};
+        if (enumerator == null) {
+            enumerator = new PathEnumerator(dGraph);
+        }
+        path[0] = departCity;
+        enumerator.enumerate(path, 1, arrivalCity, bound, bounds, (route, length) -> {
+            Flight flight = Flight.fromPath(dGraph, route, length);
+            if (!bound.accepts(flight)) {
+                return;
+            }
+            System.arraycopy(route, 0, bestRoute, 0, length);
+            bestLength[0] = length;
+            //only strictly better flights are worth finding from now on
+            if (byCost) {
+                bound.setMaxPrice(flight.getCost() - 0.01);
+            } else {
+                bound.setMaxDuration(flight.getDuration() - 2 * RouteBounds.EPSILON);
+            }
+        });
+        if (bestLength[0] == 0) {
+            return null;
+        }
+        return Flight.fromPath(dGraph, bestRoute, bestLength[0]);
+    }
+
+    /**
+     * Purpose: Runs Dijkstra's algorithm from departCity until arrivalCity is
+     * settled, skipping any banned nodes and edges. The route is left in the
+     * path array.
+     *
+     * @param departCity, is the city the flight leaves from
+     * @param arrivalCity, is the city the flight ends at
+     * @param choice, is "cost" or "time"
+     * @return the number of cities on the route, or 0 if there is no route
+     */
+    int shortestPath(int departCity, int arrivalCity, String choice) {
+        checkChoice(choice);
+        if (!isNode(departCity) || !isNode(arrivalCity) || departCity == arrivalCity
+                || isBanned(departCity) || isBanned(arrivalCity)) {
+            return 0;
+        }
+        boolean byCost = choice.equals("cost");
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        heap.clear();
+        dist[departCity] = 0;
+        parent[departCity] = -1;
+        heap.insertOrDecrease(departCity, 0);
+
+        while (!heap.isEmpty()) {
+            int city = heap.popMin();
+            if (city == arrivalCity) {
+                break;
+            }
+            int end = dGraph.edgesEnd(city);
+            for (int edge = dGraph.edgesStart(city); edge < end; edge++) {
+                int next = dGraph.edgeTarget(edge);
+                if (isBanned(next) || (bannedEdges != null && bannedEdges[edge])) {
+                    continue;
+                }
+                double weight = byCost ? dGraph.edgeCost(edge) : dGraph.edgeTime(edge);
+                double newDist = dist[city] + weight;
+                if (newDist < dist[next]) {
+                    dist[next] = newDist;
+                    parent[next] = city;
+                    heap.insertOrDecrease(next, newDist);
+                }
+            }
+        }
+        if (dist[arrivalCity] == Double.POSITIVE_INFINITY) {
+            return 0;
+        }
+
+        int length = 0;
+        for (int city = arrivalCity; city != -1; city = parent[city]) {
+            length++;
+        }
+        int city = arrivalCity;
+        for (int i = length - 1; i >= 0; i--) {
+            path[i] = city;
+            city = parent[city];
+        }
+        return length;
+    }
+
+    // The route left behind by the last successful shortestPath call.
+    int[] getPath() {
+        return path;
+    }
+
+    void setBannedNodes(boolean[] bannedNodes) {
+        this.bannedNodes = bannedNodes;
+    }
+
+    void setBannedEdges(boolean[] bannedEdges) {
+        this.bannedEdges = bannedEdges;
+    }
+
+    /**
+     * Purpose: Asks every airline for its best flight between two cities and
+     * returns them best first. Airlines with no route are left out.
+     *
+     * @param dGraphList, is one DGraph per airline
+     * @param departCity, is the city the flight leaves from
+     * @param arrivalCity, is the city the flight ends at
+     * @param choice, is "cost" or "time"
+     * @return the best flight of each airline, ordered by choice
+     */
+    public static List<Flight> bestPerAirline(List<DGraph> dGraphList, int departCity, int arrivalCity,
+                                              String choice) {
+        List<Flight> flights = new ArrayList<>();
+        for (DGraph dGraph : dGraphList) {
+            Flight flight = new RouteFinder(dGraph).shortest(departCity, arrivalCity, choice);
+            if (flight != null) {
+                flights.add(flight);
+            }
+        }
+        if (choice.equals("cost")) {
+            flights.sort(Comparator.comparingDouble(Flight::getCost));
+        } else {
+            flights.sort(Comparator.comparingDouble(Flight::getDuration));
+        }
+        return flights;
+    }
+
+    static void checkChoice(String choice) {
+        if (!choice.equals("cost") && !choice.equals("time")) {
+            throw new IllegalArgumentException("choice must be \"cost\" or \"time\", got " + choice);
+        }
+    }
+
+    private boolean isNode(int city) {
+        return city >= 0 && city < dist.length;
+    }
+
+    private boolean isBanned(int city) {
+        return bannedNodes != null && bannedNodes[city];
+    }
+}
@@ -0,0 +1,456 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File: RouteIndex.java
+ *
+ * Purpose: An in-memory copy of every stored flight, grouped by
+ * (departCity, arrivalCity) so a search never has to go to the database.
+ * Each city pair is a Route holding its flights in parallel primitive arrays
+ * (flightNum, cost, duration, stops, departure minute, id, airline, cities
+ * visited), sorted cheapest first with ties broken by flightNum. The nonstop
+ * flights of each pair are kept as a Route of their own, so both kinds of
+ * search are just a lookup. A cheapest-first page is a slice of a Route,
+ * found by binary searching for its cursor; other orders pick their page
+ * with a TopK heap over the arrays, skipping what comes before the cursor.
+ *
+ * The index is an immutable snapshot: it is read once with load() and
+ * replaced as a whole when the flights change. current() hands out the
+ * program's shared snapshot, loading it on first use; reload() swaps in a
+ * fresh one and invalidate() drops it so the next search reloads it.
+ *
+ * Usage instructions:
+ *
+ * RouteIndex index = RouteIndex.current();
+ * RouteIndex.Route route = index.route(departCity, arrivalCity, nonstop);
+ * for (int i = 0; i < route.size(); i++) {
+ *     route.cost(i) ... route.toFlight(i)
+ * }
+ */
+public class RouteIndex implements FlightSource {
+
+    private static final String LOAD_QUERY = "SELECT f.flightNum, f.ID, f.airline, f.dCity, f.aCity, " +
+            "f.duration, f.cost, f.numStops, f.dTime, l.toCity FROM flights f " +
+            "JOIN itinerary_legs l ON l.flightNum = f.flightNum ORDER BY f.flightNum, l.legIndex";
+
+    private static volatile RouteIndex current;
+
+    private final Map<Long, Route> routes;
+    private final Map<Long, Route> nonstopRoutes;
+    private final int numFlights;
+
+    private RouteIndex(Map<Long, Route> routes, Map<Long, Route> nonstopRoutes, int numFlights) {
+        this.routes = routes;
+        this.nonstopRoutes = nonstopRoutes;
+        this.numFlights = numFlights;
+    }
+
+    /**
+     * Purpose: Returns the shared index, reading it from the database the
+     * first time.
+     *
+     * @return the index
+     * @throws SQLException, if the flights cannot be read
+     */
+    public static RouteIndex current() throws SQLException {
+        RouteIndex index = current;
+        if (index == null) {
+            synchronized (RouteIndex.class) {
+                index = current;
+                if (index == null) {
+                    index = Database.run(RouteIndex::load);
+                    current = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Purpose: Reads the flights again and makes that the shared index.
+     * Searches already running keep the snapshot they started with.
+     *
+     * @return the new index
+     * @throws SQLException, if the flights cannot be read, in which case the old index stays
+     */
+    public static RouteIndex reload() throws SQLException {
+        synchronized (RouteIndex.class) {
+            current = Database.run(RouteIndex::load);
+            return current;
+        }
+    }
+
+    // Drops the shared index so the next call to current() reads the flights again.
+    public static void invalidate() {
+        synchronized (RouteIndex.class) {
+            current = null;
+        }
+    }
+
+    /**
+     * Purpose: Reads every flight and its legs into a new index.
+     *
+     * @param conn, is the connection to read with
+     * @return the index
+     * @throws SQLException, if the flights cannot be read
+     */
+    public static RouteIndex load(Connection conn) throws SQLException {
+        Builder builder = new Builder();
+        try (PreparedStatement statement = conn.prepareStatement(LOAD_QUERY);
+             ResultSet results = statement.executeQuery()) {
+            long currentFlightNum = -1;
+            List<Integer> visitOrder = null;
+            while (results.next()) {
+                long flightNum = results.getLong("flightNum");
+                if (flightNum != currentFlightNum) {
+                    int departCity = results.getInt("dCity");
+                    visitOrder = new ArrayList<>();
+                    visitOrder.add(departCity);
+                    builder.add(flightNum, results.getString("ID"), results.getString("airline"), departCity,
+                            results.getInt("aCity"), results.getDouble("duration"), results.getDouble("cost"),
+                            results.getInt("numStops"), results.getString("dTime"), visitOrder);
+                    currentFlightNum = flightNum;
+                }
+                visitOrder.add(results.getInt("toCity"));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Purpose: Looks up the flights between two cities.
+     *
+     * @param departCity, is where the flights leave from
+     * @param arrivalCity, is where they land
+     * @param nonstop, is true to only get the flights without stops
+     * @return the flights, cheapest first, empty if there are none
+     */
+    public Route route(int departCity, int arrivalCity, boolean nonstop) {
+        Route route = (nonstop ? nonstopRoutes : routes).get(key(departCity, arrivalCity));
+        return route == null ? Route.EMPTY : route;
+    }
+
+    @Override
+    public FlightPage page(int departCity, int arrivalCity, boolean nonstop, SortOrder order, SearchCursor after,
+                           int pageSize) {
+        int fetch = FlightSource.fetchSize(pageSize);
+        if (after != null) {
+            after.checkOrder(order);
+        }
+        Route route = route(departCity, arrivalCity, nonstop);
+        //only the flights on the page are ever built
+        List<Flight> fetched = new ArrayList<>();
+        for (int i : route.top(order, after, fetch)) {
+            fetched.add(route.toFlight(i));
+        }
+        return FlightPage.of(fetched, pageSize, order);
+    }
+
+    public int getNumRoutes() {
+        return routes.size();
+    }
+
+    public int getNumFlights() {
+        return numFlights;
+    }
+
+    private static long key(int departCity, int arrivalCity) {
+        return ((long) departCity << 32) | (arrivalCity & 0xffffffffL);
+    }
+
+    // Turns "HH:mm" into minutes after midnight, -1 if it is missing or malformed.
+    static int parseMinute(String time) {
+        if (time == null || time.length() != 5 || time.charAt(2) != ':') {
+            return -1;
+        }
+        try {
+            int hour = Integer.parseInt(time.substring(0, 2));
+            int minute = Integer.parseInt(time.substring(3));
+            return hour < 24 && minute < 60 ? hour * 60 + minute : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static String formatMinute(int minute) {
+        return minute < 0 ? null : String.format("%02d:%02d", minute / 60, minute % 60);
+    }
+
+    /**
+     * The flights of one city pair, in parallel arrays sorted by cost, then
+     * flightNum. Flight i's cities are cities[legStart[i]] up to but not
+     * including cities[legStart[i + 1]].
+     */
+    public static class Route {
+
+        static final Route EMPTY = new Route(0, 0, new long[0], new double[0], new double[0], new int[0],
+                new int[0], new String[0], new String[0], new int[1], new int[0]);
+
+        private final int departCity;
+        private final int arrivalCity;
+        private final long[] flightNum;
+        private final double[] cost;
+        private final double[] duration;
+        private final int[] stops;
+        private final int[] departMinute;
+        private final String[] id;
+        private final String[] airline;
+        private final int[] legStart;
+        private final int[] cities;
+
+        private Route(int departCity, int arrivalCity, long[] flightNum, double[] cost, double[] duration,
+                      int[] stops, int[] departMinute, String[] id, String[] airline, int[] legStart, int[] cities) {
+            this.departCity = departCity;
+            this.arrivalCity = arrivalCity;
+            this.flightNum = flightNum;
+            this.cost = cost;
+            this.duration = duration;
+            this.stops = stops;
+            this.departMinute = departMinute;
+            this.id = id;
+            this.airline = airline;
+            this.legStart = legStart;
+            this.cities = cities;
+        }
+
+        public int size() {
+            return cost.length;
+        }
+
+        public int getDepartCity() {
+            return departCity;
+        }
+
+        public int getArrivalCity() {
+            return arrivalCity;
+        }
+
+        public long flightNum(int i) {
+            return flightNum[i];
+        }
+
+        public double cost(int i) {
+            return cost[i];
+        }
+
+        public double duration(int i) {
+            return duration[i];
+        }
+
+        public int stops(int i) {
+            return stops[i];
+        }
+
+        // Minutes after midnight, or -1 if the departure time is unknown.
+        public int departMinute(int i) {
+            return departMinute[i];
+        }
+
+        public String id(int i) {
+            return id[i];
+        }
+
+        public String airline(int i) {
+            return airline[i];
+        }
+
+        // Where flight i ranks against flight j in order: key first, then flightNum.
+        public int compare(SortOrder order, int i, int j) {
+            int byKey = Double.compare(order.key(cost[i], duration[i]), order.key(cost[j], duration[j]));
+            return byKey != 0 ? byKey : Long.compare(flightNum[i], flightNum[j]);
+        }
+
+        // Where flight i ranks against a cursor: positive if it comes after it.
+        public int compare(int i, SearchCursor cursor) {
+            int byKey = Double.compare(cursor.getOrder().key(cost[i], duration[i]), cursor.getSortKey());
+            return byKey != 0 ? byKey : Long.compare(flightNum[i], cursor.getFlightNum());
+        }
+
+        /**
+         * Purpose: Ranks the flights of this route that come after a cursor.
+         *
+         * @param order, is how to rank them
+         * @param after, is where the previous page ended, or null to start at the top
+         * @param k, is how many to keep
+         * @return the positions of the best k flights after the cursor, best first
+         */
+        public int[] top(SortOrder order, SearchCursor after, int k) {
+            if (order == SortOrder.CHEAPEST) {
+                //already in this order, so the page is a slice starting just past the cursor
+                int start = after == null ? 0 : firstAfter(after);
+                int[] slice = new int[Math.min(size() - start, Math.max(0, k))];
+                for (int i = 0; i < slice.length; i++) {
+                    slice[i] = start + i;
+                }
+                return slice;
+            }
+            if (after == null) {
+                return TopK.smallest(size(), k, (i, j) -> compare(order, i, j));
+            }
+            return TopK.smallest(size(), k, i -> compare(i, after) > 0, (i, j) -> compare(order, i, j));
+        }
+
+        // Binary search for the first position ranked after a CHEAPEST cursor.
+        private int firstAfter(SearchCursor cursor) {
+            int low = 0;
+            int high = size();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(mid, cursor) > 0) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Purpose: Builds a Flight for the i'th entry, the same as one read from
+         * the database.
+         *
+         * @param i, is the position in this route
+         * @return a new Flight
+         */
+        public Flight toFlight(int i) {
+            Flight flight = new Flight();
+            flight.setFlightNum(flightNum[i]);
+            flight.setID(id[i]);
+            flight.setAirlineName(airline[i]);
+            flight.setCost(cost[i]);
+            flight.setDuration(duration[i]);
+            flight.setNumStops(stops[i]);
+            flight.setNonStop(stops[i] == 0);
+            flight.setDepartTime(formatMinute(departMinute[i]));
+            flight.setDepartCity(departCity);
+            flight.setArrivalCity(arrivalCity);
+            List<Integer> visitOrder = new ArrayList<>(legStart[i + 1] - legStart[i]);
+            for (int c = legStart[i]; c < legStart[i + 1]; c++) {
+                visitOrder.add(cities[c]);
+            }
+            flight.setVisitOrder(visitOrder);
+            return flight;
+        }
+
+        /**
+         * Purpose: Builds Flights for entries from up to but not including to.
+         *
+         * @param from, is the first position
+         * @param to, is one past the last position
+         * @return the flights in route order
+         */
+        public List<Flight> toFlights(int from, int to) {
+            List<Flight> flights = new ArrayList<>(Math.max(0, to - from));
+            for (int i = from; i < to; i++) {
+                flights.add(toFlight(i));
+            }
+            return flights;
+        }
+    }
+
+    /*
+     * Collects flights one at a time and packs them into sorted Routes.
+     * Package-private so tests can build an index without a database.
+     */
+    static class Builder {
+
+        private final Map<Long, List<Entry>> byRoute = new HashMap<>();
+        private int numFlights;
+
+        private static class Entry {
+            long flightNum;
+            String id;
+            String airline;
+            double duration;
+            double cost;
+            int stops;
+            int departMinute;
+            //may still be filled in by the caller, so it is only copied at build time
+            List<Integer> visitOrder;
+            int[] cities;
+        }
+
+        Builder add(long flightNum, String id, String airline, int departCity, int arrivalCity, double duration,
+                    double cost, int stops, String departTime, List<Integer> visitOrder) {
+            Entry entry = new Entry();
+            entry.flightNum = flightNum;
+            entry.id = id;
+            entry.airline = airline;
+            entry.duration = duration;
+            entry.cost = cost;
+            entry.stops = stops;
+            entry.departMinute = parseMinute(departTime);
+            entry.visitOrder = visitOrder;
+            byRoute.computeIfAbsent(key(departCity, arrivalCity), k -> new ArrayList<>()).add(entry);
+            numFlights++;
+            return this;
+        }
+
+        RouteIndex build() {
+            Map<Long, Route> routes = new HashMap<>();
+            Map<Long, Route> nonstopRoutes = new HashMap<>();
+            for (Map.Entry<Long, List<Entry>> group : byRoute.entrySet()) {
+                long key = group.getKey();
+                List<Entry> entries = group.getValue();
+                for (Entry entry : entries) {
+                    entry.cities = entry.visitOrder.stream().mapToInt(Integer::intValue).toArray();
+                }
+                //matches SortOrder.CHEAPEST so that order is a prefix
+                entries.sort((a, b) -> {
+                    int byCost = Double.compare(a.cost, b.cost);
+                    return byCost != 0 ? byCost : Long.compare(a.flightNum, b.flightNum);
+                });
+                int departCity = (int) (key >> 32);
+                int arrivalCity = (int) key;
+                routes.put(key, pack(departCity, arrivalCity, entries));
+
+                List<Entry> nonstop = new ArrayList<>();
+                for (Entry entry : entries) {
+                    if (entry.stops == 0) {
+                        nonstop.add(entry);
+                    }
+                }
+                if (!nonstop.isEmpty()) {
+                    nonstopRoutes.put(key, pack(departCity, arrivalCity, nonstop));
+                }
+            }
+            return new RouteIndex(routes, nonstopRoutes, numFlights);
+        }
+
+        private static Route pack(int departCity, int arrivalCity, List<Entry> entries) {
+            int n = entries.size();
+            long[] flightNum = new long[n];
+            double[] cost = new double[n];
+            double[] duration = new double[n];
+            int[] stops = new int[n];
+            int[] departMinute = new int[n];
+            String[] id = new String[n];
+            String[] airline = new String[n];
+            int[] legStart = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                Entry entry = entries.get(i);
+                flightNum[i] = entry.flightNum;
+                cost[i] = entry.cost;
+                duration[i] = entry.duration;
+                stops[i] = entry.stops;
+                departMinute[i] = entry.departMinute;
+                id[i] = entry.id;
+                airline[i] = entry.airline;
+                legStart[i + 1] = legStart[i] + entry.cities.length;
+            }
+            int[] cities = new int[legStart[n]];
+            for (int i = 0; i < n; i++) {
+                int[] legs = entries.get(i).cities;
+                System.arraycopy(legs, 0, cities, legStart[i], legs.length);
+            }
+            return new Route(departCity, arrivalCity, flightNum, cost, duration, stops, departMinute, id, airline,
+                    legStart, cities);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File: SchemaMigrations.java
+ *
+ * Purpose: Brings the database schema up to date. The schema version is kept
+ * in SQLite's PRAGMA user_version, and every migration newer than it is run
+ * in order, each in its own transaction together with the version bump, so a
+ * failed migration leaves the database as it was. Foreign keys are switched
+ * off while migrations rebuild tables, as SQLite recommends, and every
+ * migration must leave them intact before it commits.
+ *
+ * Versions:
+ * 1. The original users and flights tables.
+ * 2. Normalized flights: integer city columns, REAL cost, an integer
+ *    flightNum key, the route in an itinerary_legs table instead of a
+ *    visitOrder string, no obj text copy of the flight, and an index on
+ *    (dCity, aCity, numStops) so searches are index seeks.
+ *
+ * Usage instructions:
+ *
+ * SchemaMigrations.migrate(connection);
+ *
+ * To change the schema add a new method and a line to MIGRATIONS. Never edit
+ * a migration that has already shipped.
+ */
+public class SchemaMigrations {
+
+    private interface Migration {
+        void apply(Connection conn) throws SQLException;
+    }
+
+    //MIGRATIONS.get(i) upgrades the schema from version i to version i + 1
+    private static final List<Migration> MIGRATIONS = List.of(
+            SchemaMigrations::createOriginalTables,
+            SchemaMigrations::normalizeFlights
+    );
+
+    public static int latestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    /**
+     * Purpose: Runs every migration the database has not had yet.
+     *
+     * @param conn, is a connection in auto-commit mode
+     * @return the number of migrations run
+     * @throws SQLException, if a migration fails. That migration is rolled back.
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        int version = currentVersion(conn);
+        int applied = 0;
+        //foreign_keys cannot change inside a transaction, so it is switched off around all of them
+        boolean foreignKeys = pragmaOn(conn, "foreign_keys");
+        setForeignKeys(conn, false);
+        try {
+            while (version < MIGRATIONS.size()) {
+                conn.setAutoCommit(false);
+                try {
+                    MIGRATIONS.get(version).apply(conn);
+                    version++;
+                    checkForeignKeys(conn, version);
+                    try (Statement statement = conn.createStatement()) {
+                        statement.executeUpdate("PRAGMA user_version = " + version);
+                    }
+                    conn.commit();
+                    applied++;
+                    System.out.println("Migrated database schema to version " + version + ".");
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        } finally {
+            setForeignKeys(conn, foreignKeys);
+        }
+        if (applied > 0) {
+            //give the space freed by the old tables back to the file system
+            try (Statement statement = conn.createStatement()) {
+                statement.executeUpdate("VACUUM");
+            }
+        }
+        return applied;
+    }
+
+    public static int currentVersion(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet results = statement.executeQuery("PRAGMA user_version")) {
+            return results.next() ? results.getInt(1) : 0;
+        }
+    }
+
+    private static boolean pragmaOn(Connection conn, String pragma) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet results = statement.executeQuery("PRAGMA " + pragma)) {
+            return results.next() && results.getInt(1) != 0;
+        }
+    }
+
+    private static void setForeignKeys(Connection conn, boolean on) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate("PRAGMA foreign_keys = " + (on ? "ON" : "OFF"));
+        }
+    }
+
+    // Fails the migration to version if it left a row pointing at nothing.
+    private static void checkForeignKeys(Connection conn, int version) throws SQLException {
+        try (Statement statement = conn.createStatement();
+             ResultSet results = statement.executeQuery("PRAGMA foreign_key_check")) {
+            if (results.next()) {
+                throw new SQLException("Migration to version " + version + " left a " + results.getString(1)
+                        + " row without its " + results.getString(3) + " row");
+            }
+        }
+    }
+
+    // Version 1: the tables as they were first created, for brand new databases.
+    private static void createOriginalTables(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS Users (username TEXT, pass TEXT, email TEXT, " +
+                    "phone TEXT)");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS Flights (airline TEXT, dCity INTEGER, " +
+                    "aCity INTEGER, duration NUMERIC, cost TEXT, numStops INTEGER, obj BLOB, ID TEXT, " +
+                    "visitOrder TEXT, dTime TEXT)");
+        }
+    }
+
+    // Version 2: see the class comment.
+    private static void normalizeFlights(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate("CREATE TABLE flights_new (" +
+                    "flightNum INTEGER PRIMARY KEY, " +
+                    "ID TEXT NOT NULL, " +
+                    "airline TEXT NOT NULL, " +
+                    "dCity INTEGER NOT NULL, " +
+                    "aCity INTEGER NOT NULL, " +
+                    "duration REAL NOT NULL, " +
+                    "cost REAL NOT NULL, " +
+                    "numStops INTEGER NOT NULL, " +
+                    "dTime TEXT)");
+            statement.executeUpdate("CREATE TABLE itinerary_legs (" +
+                    "flightNum INTEGER NOT NULL REFERENCES flights(flightNum) ON DELETE CASCADE, " +
+                    "legIndex INTEGER NOT NULL, " +
+                    "fromCity INTEGER NOT NULL, " +
+                    "toCity INTEGER NOT NULL, " +
+                    "PRIMARY KEY (flightNum, legIndex)) WITHOUT ROWID");
+            statement.executeUpdate("INSERT INTO flights_new (flightNum, ID, airline, dCity, aCity, duration, " +
+                    "cost, numStops, dTime) " +
+                    "SELECT rowid, ID, airline, CAST(dCity AS INTEGER), CAST(aCity AS INTEGER), " +
+                    "CAST(duration AS REAL), ROUND(CAST(cost AS REAL), 2), CAST(numStops AS INTEGER), dTime " +
+                    "FROM Flights");
+        }
+
+        //split every old "[1, 3, 2]" visitOrder into legs 1 -> 3 and 3 -> 2
+        try (Statement select = conn.createStatement();
+             ResultSet results = select.executeQuery("SELECT rowid, visitOrder FROM Flights");
+             PreparedStatement insert = conn.prepareStatement("INSERT INTO itinerary_legs " +
+                     "(flightNum, legIndex, fromCity, toCity) VALUES (?, ?, ?, ?)")) {
+            while (results.next()) {
+                long flightNum = results.getLong(1);
+                List<Integer> cities = parseCities(results.getString(2));
+                for (int leg = 1; leg < cities.size(); leg++) {
+                    insert.setLong(1, flightNum);
+                    insert.setInt(2, leg - 1);
+                    insert.setInt(3, cities.get(leg - 1));
+                    insert.setInt(4, cities.get(leg));
+                    insert.addBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+
+        try (Statement statement = conn.createStatement()) {
+            statement.executeUpdate("DROP TABLE Flights");
+            statement.executeUpdate("ALTER TABLE flights_new RENAME TO flights");
+            statement.executeUpdate("CREATE INDEX idx_flights_route ON flights (dCity, aCity, numStops)");
+        }
+    }
+
+    // Reads the city numbers out of a string such as "[1, 3, 2]".
+    private static List<Integer> parseCities(String visitOrder) {
+        List<Integer> cities = new ArrayList<>();
+        if (visitOrder == null) {
+            return cities;
+        }
+        for (String city : visitOrder.split("\\D+")) {
+            if (!city.isEmpty()) {
+                cities.add(Integer.parseInt(city));
+            }
+        }
+        return cities;
+    }
+}
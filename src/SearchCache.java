@@ -0,0 +1,202 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * File: SearchCache.java
+ *
+ * Purpose: A bounded cache for search results. It holds at most maxEntries
+ * results and, when full, evicts the one used least recently. Each result
+ * also expires a fixed time after it was stored, so prices the cache missed
+ * hearing about cannot stay wrong forever. Results can be dropped one key
+ * at a time, by a condition on the key, or all at once. Every invalidation
+ * moves the cache to a new generation. put() is given the generation the
+ * caller saw before computing its value and drops the value if an
+ * invalidation happened in between, so a search that raced with a price
+ * change cannot put the old answer back.
+ *
+ * Hits, misses, evictions, expirations and invalidations are counted.
+ *
+ * Usage instructions:
+ *
+ * SearchCache<SearchKey, List<Flight>> cache = new SearchCache<>(256, 60_000);
+ * List<Flight> flights = cache.get(key);
+ * if (flights == null) {
+ *     long generation = cache.generation();
+ *     flights = ...;
+ *     cache.put(key, flights, generation);
+ * }
+ */
+public class SearchCache<K, V> {
+
+    private static class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    //access order, so the eldest entry is the least recently used
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private long generation;
+
+    //cache metrics, guarded by this
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public SearchCache(int maxEntries, long ttlMillis) {
+        this(maxEntries, ttlMillis, System::nanoTime);
+    }
+
+    // The clock is in nanoseconds. Package-private so tests can control time.
+    SearchCache(int maxEntries, long ttlMillis, LongSupplier clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1, got " + maxEntries);
+        }
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be positive, got " + ttlMillis);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > SearchCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Purpose: Looks up a result, counting a hit or a miss. An expired result
+     * is removed and counts as a miss.
+     *
+     * @param key, is the search
+     * @return the cached result, or null if there is none
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && clock.getAsLong() - entry.expiresAt >= 0) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    // The current generation, to pass to put() once the value is computed.
+    public synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Purpose: Stores a result unless the cache was invalidated after the
+     * caller read the generation.
+     *
+     * @param key, is the search
+     * @param value, is its result
+     * @param seenGeneration, is what generation() returned before the result was computed
+     * @return true if the result was stored
+     */
+    public synchronized boolean put(K key, V value, long seenGeneration) {
+        if (seenGeneration != generation) {
+            return false;
+        }
+        entries.put(key, new Entry<>(value, clock.getAsLong() + ttlNanos));
+        return true;
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        if (entries.remove(key) != null) {
+            invalidations++;
+        }
+    }
+
+    // Drops every result whose key matches, e.g. every search touching one city pair.
+    public synchronized void invalidateIf(Predicate<? super K> matches) {
+        generation++;
+        Iterator<K> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (matches.test(keys.next())) {
+                keys.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getExpirations() {
+        return expirations;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    // Fraction of lookups answered from the cache.
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SearchCache{" +
+                "size=" + entries.size() +
+                ", max=" + maxEntries +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", hitRate=" + String.format("%.3f", getHitRate()) +
+                ", evictions=" + evictions +
+                ", expirations=" + expirations +
+                ", invalidations=" + invalidations +
+                '}';
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * File: SearchConstraints.java
+ *
+ * Purpose: The filters a customer puts on a flight search: the most stops,
+ * the longest total duration, the highest price and which airlines are
+ * allowed. The searches (PathEnumerator, RouteFinder, KShortestPaths and
+ * ParetoSearch) use these together with RouteBounds to drop partial routes
+ * that can no longer meet them, rather than filtering after the fact.
+ *
+ * Usage instructions:
+ *
+ * SearchConstraints constraints = new SearchConstraints();
+ * constraints.setMaxStops(0);           //nonstop only
+ * constraints.setMaxPrice(300);
+ * constraints.setAllowedAirlines(Set.of("Delta", "United"));
+ *
+ * Anything not set is unlimited.
+ */
+public class SearchConstraints {
+
+    private int maxStops = Integer.MAX_VALUE;
+    private double maxDuration = Double.POSITIVE_INFINITY;
+    private double maxPrice = Double.POSITIVE_INFINITY;
+    //null means every airline is allowed
+    private Set<String> allowedAirlines;
+
+    public SearchConstraints() {
+    }
+
+    // Copy constructor, searches use it to tighten bounds without touching the caller's copy.
+    public SearchConstraints(SearchConstraints other) {
+        this.maxStops = other.maxStops;
+        this.maxDuration = other.maxDuration;
+        this.maxPrice = other.maxPrice;
+        this.allowedAirlines = other.allowedAirlines;
+    }
+
+    // Returns constraints that allow every flight.
+    public static SearchConstraints none() {
+        return new SearchConstraints();
+    }
+
+    public int getMaxStops() {
+        return maxStops;
+    }
+
+    public void setMaxStops(int maxStops) {
+        this.maxStops = maxStops;
+    }
+
+    public double getMaxDuration() {
+        return maxDuration;
+    }
+
+    public void setMaxDuration(double maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    public double getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(double maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Set<String> getAllowedAirlines() {
+        return allowedAirlines;
+    }
+
+    // Pass null to allow every airline.
+    public void setAllowedAirlines(Set<String> allowedAirlines) {
+        if (allowedAirlines == null) {
+            this.allowedAirlines = null;
+        } else {
+            this.allowedAirlines = Collections.unmodifiableSet(new HashSet<>(allowedAirlines));
+        }
+    }
+
+    public boolean allowsAirline(String airlineName) {
+        return allowedAirlines == null || allowedAirlines.contains(airlineName);
+    }
+
+    // Returns true if stops, duration or price are limited.
+    public boolean limitsRoute() {
+        return maxStops != Integer.MAX_VALUE || maxDuration != Double.POSITIVE_INFINITY
+                || maxPrice != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Purpose: The final check on a finished flight.
+     *
+     * @param flight, is the flight to check
+     * @return true if the flight meets every constraint
+     */
+    public boolean accepts(Flight flight) {
+        return allowsAirline(flight.getAirlineName()) && flight.getNumStops() <= maxStops
+                && flight.getDuration() <= maxDuration + RouteBounds.EPSILON && flight.getCost() <= maxPrice;
+    }
+}
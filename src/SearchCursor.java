@@ -0,0 +1,58 @@
+/**
+ * File: SearchCursor.java
+ *
+ * Purpose: Marks where a page of search results ended, by the sort key and
+ * flightNum of its last flight. The next page is every flight ranked after
+ * that (key, flightNum) pair. flightNum is the flights table's primary key,
+ * so no two flights share one (IDs are random and may repeat), which makes
+ * this stable: flights added or removed elsewhere in the list never make a
+ * page repeat or skip a flight, and no backend has to count or skip the
+ * pages already shown.
+ *
+ * A cursor only makes sense for the order it was made in.
+ */
+public final class SearchCursor {
+
+    private final SortOrder order;
+    private final double sortKey;
+    private final long flightNum;
+
+    public SearchCursor(SortOrder order, double sortKey, long flightNum) {
+        this.order = order;
+        this.sortKey = sortKey;
+        this.flightNum = flightNum;
+    }
+
+    // The cursor just past flight in the given order.
+    public static SearchCursor after(Flight flight, SortOrder order) {
+        return new SearchCursor(order, order.key(flight.getCost(), flight.getDuration()), flight.getFlightNum());
+    }
+
+    public SortOrder getOrder() {
+        return order;
+    }
+
+    public double getSortKey() {
+        return sortKey;
+    }
+
+    public long getFlightNum() {
+        return flightNum;
+    }
+
+    // Throws if this cursor came from a search in another order.
+    void checkOrder(SortOrder expected) {
+        if (order != expected) {
+            throw new IllegalArgumentException("Cursor is for " + order + " results, not " + expected);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SearchCursor{" +
+                "order=" + order +
+                ", sortKey=" + sortKey +
+                ", flightNum=" + flightNum +
+                '}';
+    }
+}
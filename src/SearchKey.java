@@ -0,0 +1,75 @@
+import java.util.Objects;
+
+/**
+ * File: SearchKey.java
+ *
+ * Purpose: Identifies one flight search, so identical searches can share a
+ * cached result: the two cities, whether only nonstop flights were wanted,
+ * the order the results were ranked in and how many of them were kept.
+ */
+public final class SearchKey {
+
+    private final int departCity;
+    private final int arrivalCity;
+    private final boolean nonstop;
+    private final SortOrder order;
+    private final int limit;
+
+    public SearchKey(int departCity, int arrivalCity, boolean nonstop, SortOrder order, int limit) {
+        this.departCity = departCity;
+        this.arrivalCity = arrivalCity;
+        this.nonstop = nonstop;
+        this.order = order;
+        this.limit = limit;
+    }
+
+    public int getDepartCity() {
+        return departCity;
+    }
+
+    public int getArrivalCity() {
+        return arrivalCity;
+    }
+
+    public boolean isNonstop() {
+        return nonstop;
+    }
+
+    public SortOrder getOrder() {
+        return order;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    // True if this search is between the two cities, in either direction.
+    public boolean connects(int city1, int city2) {
+        return (departCity == city1 && arrivalCity == city2) || (departCity == city2 && arrivalCity == city1);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SearchKey that = (SearchKey) o;
+        return departCity == that.departCity && arrivalCity == that.arrivalCity && nonstop == that.nonstop
+                && order == that.order && limit == that.limit;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(departCity, arrivalCity, nonstop, order, limit);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchKey{" +
+                "departCity=" + departCity +
+                ", arrivalCity=" + arrivalCity +
+                ", nonstop=" + nonstop +
+                ", order=" + order +
+                ", limit=" + limit +
+                '}';
+    }
+}
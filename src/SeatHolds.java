@@ -0,0 +1,241 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File: SeatHolds.java
+ *
+ * Purpose: Keeps seats for a user while they finish booking. A hold claims
+ * the seats in the SeatInventoryStore straight away, so nobody else can
+ * take them, and gives them back by itself if it is neither confirmed nor
+ * released within the time to live. Expiry is a TimerWheel timeout, so
+ * holding and expiring are O(1) however many holds are outstanding.
+ *
+ * A hold ends exactly once: confirm(), release() and expiry race through a
+ * compare-and-set on its state, and only the winner acts. A confirm that
+ * loses to expiry returns false, and the seats may have been sold to
+ * someone else since.
+ *
+ * Usage instructions:
+ *
+ * SeatHolds holds = new SeatHolds(SeatInventoryStore.shared(), wheel, 15 * 60 * 1000);
+ * SeatHolds.Hold hold = holds.hold(flight.getFlightNum(), date, 12, 13);
+ * SeatHolds.Hold family = holds.holdTogether(flight.getFlightNum(), date, 4);
+ * if (hold != null) {
+ *     ...
+ *     if (!hold.confirm()) {
+ *         //took too long, the seats went back
+ *     }
+ * }
+ */
+public class SeatHolds {
+
+    private static final int HELD = 0;
+    private static final int CONFIRMED = 1;
+    private static final int RELEASED = 2;
+    private static final int EXPIRED = 3;
+
+    /**
+     * Seats kept for one user on one flight-day.
+     */
+    public final class Hold {
+        private final long flightNum;
+        private final LocalDate date;
+        private final int[] seats;
+        private final AtomicInteger state = new AtomicInteger(HELD);
+        private final TimerWheel.Timeout timeout;
+
+        private Hold(long flightNum, LocalDate date, int[] seats) {
+            this.flightNum = flightNum;
+            this.date = date;
+            this.seats = seats;
+            //expire() only reads the fields above, which are already set
+            this.timeout = wheel.schedule(this::expire, ttlMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // Makes the seats the user's for good. False if the hold already ended.
+        public boolean confirm() {
+            if (!state.compareAndSet(HELD, CONFIRMED)) {
+                return false;
+            }
+            end();
+            confirmed.incrementAndGet();
+            return true;
+        }
+
+        // Gives the seats back now. False if the hold already ended.
+        public boolean release() {
+            if (!state.compareAndSet(HELD, RELEASED)) {
+                return false;
+            }
+            end();
+            store.release(flightNum, date, seats);
+            released.incrementAndGet();
+            return true;
+        }
+
+        /*
+         * Takes back a confirm, giving the seats back, for ItineraryBooking
+         * when a later leg of the same itinerary could not be confirmed.
+         * False if the hold was not confirmed.
+         */
+        boolean unconfirm() {
+            if (!state.compareAndSet(CONFIRMED, RELEASED)) {
+                return false;
+            }
+            store.release(flightNum, date, seats);
+            confirmed.decrementAndGet();
+            released.incrementAndGet();
+            return true;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(HELD, EXPIRED)) {
+                active.decrementAndGet();
+                store.release(flightNum, date, seats);
+                expired.incrementAndGet();
+            }
+        }
+
+        private void end() {
+            timeout.cancel();
+            active.decrementAndGet();
+        }
+
+        public long getFlightNum() {
+            return flightNum;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public int[] getSeats() {
+            return seats.clone();
+        }
+
+        public boolean isHeld() {
+            return state.get() == HELD;
+        }
+
+        public boolean isConfirmed() {
+            return state.get() == CONFIRMED;
+        }
+
+        public boolean isReleased() {
+            return state.get() == RELEASED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        @Override
+        public String toString() {
+            return "Hold{" +
+                    "flightNum=" + flightNum +
+                    ", date=" + date +
+                    ", seats=" + Arrays.toString(seats) +
+                    ", state=" + state.get() +
+                    '}';
+        }
+    }
+
+    private final SeatInventoryStore store;
+    private final TimerWheel wheel;
+    private final long ttlMillis;
+
+    //hold metrics
+    private final AtomicLong active = new AtomicLong();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong confirmed = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+
+    public SeatHolds(SeatInventoryStore store, TimerWheel wheel, long ttlMillis) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttlMillis must be positive, got " + ttlMillis);
+        }
+        this.store = store;
+        this.wheel = wheel;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Purpose: Claims seats and keeps them for the time to live.
+     *
+     * @param flightNum, is the flight's key in the flights table
+     * @param date, is the day it flies
+     * @param seats, are the seats to keep
+     * @return the hold, or null if any of the seats is taken
+     */
+    public Hold hold(long flightNum, LocalDate date, int... seats) {
+        if (!store.claim(flightNum, date, seats)) {
+            return null;
+        }
+        active.incrementAndGet();
+        created.incrementAndGet();
+        return new Hold(flightNum, date, seats.clone());
+    }
+
+    /**
+     * Purpose: Claims n adjacent seats in one row and keeps them for the time
+     * to live.
+     *
+     * @param flightNum, is the flight's key in the flights table
+     * @param date, is the day it flies
+     * @param n, is the group size
+     * @return the hold, or null if no row has n seats free together
+     */
+    public Hold holdTogether(long flightNum, LocalDate date, int n) {
+        int[] seats = store.claimTogether(flightNum, date, n);
+        if (seats == null) {
+            return null;
+        }
+        active.incrementAndGet();
+        created.incrementAndGet();
+        return new Hold(flightNum, date, seats);
+    }
+
+    public SeatInventoryStore getStore() {
+        return store;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    // Holds neither confirmed, released nor expired yet.
+    public long getActive() {
+        return active.get();
+    }
+
+    public long getCreated() {
+        return created.get();
+    }
+
+    public long getConfirmed() {
+        return confirmed.get();
+    }
+
+    public long getReleased() {
+        return released.get();
+    }
+
+    public long getExpired() {
+        return expired.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SeatHolds{" +
+                "active=" + getActive() +
+                ", created=" + getCreated() +
+                ", confirmed=" + getConfirmed() +
+                ", released=" + getReleased() +
+                ", expired=" + getExpired() +
+                '}';
+    }
+}
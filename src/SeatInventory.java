@@ -0,0 +1,167 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * File: SeatInventory.java
+ *
+ * Purpose: The seats of one flight, safe for any number of bookers at once
+ * without locks. Seat i is bit i of a bitmap kept in an AtomicLongArray, set
+ * when the seat is taken, so 120 seats are two longs.
+ *
+ * claim() takes a whole set of seats or none of them. The seats are turned
+ * into one mask per 64-seat word and each word is claimed with a single
+ * compare-and-set that only succeeds if none of its seats are taken. Words
+ * are claimed in ascending order; if one fails, the words already claimed are
+ * released again. A request within one word, which covers most bookings, is
+ * therefore a single CAS. No seat is ever sold twice, since a seat only
+ * becomes taken through a CAS that saw it free. The number of free seats is
+ * kept in a counter, so reading it is O(1) and lock-free.
+ *
+ * Usage instructions:
+ *
+ * SeatInventory seats = new SeatInventory(120);
+ * if (seats.claim(4, 5, 6)) {
+ *     ...
+ *     seats.release(4, 5, 6);   //if the booking falls through
+ * }
+ */
+public class SeatInventory {
+
+    private final int capacity;
+    //bit (seat & 63) of word (seat >> 6) is set while the seat is taken
+    private final AtomicLongArray taken;
+    private final AtomicInteger free;
+
+    public SeatInventory(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.taken = new AtomicLongArray((capacity + 63) >>> 6);
+        this.free = new AtomicInteger(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Seats nobody holds right now.
+    public int freeCount() {
+        return free.get();
+    }
+
+    public boolean isFree(int seat) {
+        checkSeat(seat);
+        return (taken.get(seat >>> 6) & (1L << seat)) == 0;
+    }
+
+    /**
+     * Purpose: Takes every one of the given seats, or none of them if any is
+     * already taken.
+     *
+     * @param seats, are the seat numbers from 0 to capacity - 1, duplicates are ignored
+     * @return true if all of the seats are now held by the caller
+     */
+    public boolean claim(int... seats) {
+        long[] masks = masksOf(seats);
+        for (int word = 0; word < masks.length; word++) {
+            if (masks[word] != 0 && !claimWord(word, masks[word])) {
+                //give back what this call already took, in the words before this one
+                for (int undo = 0; undo < word; undo++) {
+                    if (masks[undo] != 0) {
+                        clearWord(undo, masks[undo]);
+                    }
+                }
+                return false;
+            }
+        }
+        free.addAndGet(-bitCount(masks));
+        return true;
+    }
+
+    /**
+     * Purpose: Gives seats back. Seats that were already free are left alone.
+     *
+     * @param seats, are the seat numbers to free
+     * @return how many seats were actually freed
+     */
+    public int release(int... seats) {
+        long[] masks = masksOf(seats);
+        int released = 0;
+        for (int word = 0; word < masks.length; word++) {
+            if (masks[word] != 0) {
+                released += Long.bitCount(clearWord(word, masks[word]));
+            }
+        }
+        free.addAndGet(released);
+        return released;
+    }
+
+    /*
+     * Sets mask in a word if none of its bits are set yet. Only retries when
+     * some other seat of the word changed underneath.
+     */
+    private boolean claimWord(int word, long mask) {
+        while (true) {
+            long current = taken.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+            if (taken.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+        }
+    }
+
+    // Clears mask in a word and returns the bits that were set before.
+    private long clearWord(int word, long mask) {
+        while (true) {
+            long current = taken.get(word);
+            if (taken.compareAndSet(word, current, current & ~mask)) {
+                return current & mask;
+            }
+        }
+    }
+
+    // The taken bits of seats 64 * word to 64 * word + 63, for searches a word at a time.
+    long word(int word) {
+        return taken.get(word);
+    }
+
+    private long[] masksOf(int[] seats) {
+        long[] masks = new long[taken.length()];
+        for (int seat : seats) {
+            checkSeat(seat);
+            masks[seat >>> 6] |= 1L << seat;
+        }
+        return masks;
+    }
+
+    private static int bitCount(long[] masks) {
+        int count = 0;
+        for (long mask : masks) {
+            count += Long.bitCount(mask);
+        }
+        return count;
+    }
+
+    private void checkSeat(int seat) {
+        if (seat < 0 || seat >= capacity) {
+            throw new IllegalArgumentException("Seat " + seat + " is not between 0 and " + (capacity - 1));
+        }
+    }
+
+    @Override
+    public String toString() {
+        long[] words = new long[taken.length()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = taken.get(i);
+        }
+        return "SeatInventory{" +
+                "capacity=" + capacity +
+                ", free=" + freeCount() +
+                ", taken=" + Arrays.toString(words) +
+                '}';
+    }
+}
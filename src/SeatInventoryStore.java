@@ -0,0 +1,230 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File: SeatInventoryStore.java
+ *
+ * Purpose: The seats of every flight on every day it flies. Each
+ * (flightNum, service date) has its own SeatInventory, created the first time
+ * someone books that flight on that date. Until then it takes no memory at
+ * all and every seat counts as free, so a year of schedule only costs memory
+ * for the flight-days that actually sell. Flights are told apart by flightNum,
+ * the flights table's key, since their IDs are random and may repeat. A booked flight-day is a couple of
+ * longs of bitmap. Every flight has the store's CabinLayout, which is also
+ * what claimTogether() uses to seat groups side by side.
+ *
+ * Inventories are grouped by date, so evictBefore() can drop every day that
+ * has flown in one step. Those days are then closed: a late booking for one
+ * is refused rather than starting an empty inventory again. evictDaily()
+ * runs it on a TimerWheel every midnight.
+ *
+ * Usage instructions:
+ *
+ * SeatInventoryStore store = SeatInventoryStore.shared();
+ * LocalDate date = SeatInventoryStore.parseDate("07/04/2026");
+ * if (store.claim(flight.getFlightNum(), date, 12, 13)) {
+ *     ...
+ * }
+ * int[] family = store.claimTogether(flight.getFlightNum(), date, 4);
+ * store.evictDaily(wheel, Clock.systemDefaultZone());   //drops each day once it has flown
+ */
+public class SeatInventoryStore {
+
+    //the format Main asks users to type dates in
+    public static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("MM/dd/uuuu").withResolverStyle(ResolverStyle.STRICT);
+
+    private static volatile SeatInventoryStore shared;
+
+    private final CabinLayout layout;
+    private final int seatsPerFlight;
+    private final ConcurrentSkipListMap<LocalDate, ConcurrentHashMap<Long, SeatInventory>> byDate =
+            new ConcurrentSkipListMap<>();
+    //dates before this have been evicted and can no longer be booked
+    private volatile LocalDate openFrom = LocalDate.MIN;
+
+    public SeatInventoryStore(CabinLayout layout) {
+        this.layout = layout;
+        this.seatsPerFlight = layout.getNumSeats();
+    }
+
+    // The store the program books against, created on first use.
+    public static SeatInventoryStore shared() {
+        SeatInventoryStore store = shared;
+        if (store == null) {
+            synchronized (SeatInventoryStore.class) {
+                store = shared;
+                if (store == null) {
+                    store = new SeatInventoryStore(CabinLayout.STANDARD);
+                    shared = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Purpose: Reads a date typed as MM/DD/YYYY.
+     *
+     * @param date, is the text to read
+     * @return the date
+     * @throws IllegalArgumentException, if it is not a real date in that format
+     */
+    public static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date.trim(), DATE_FORMAT);
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new IllegalArgumentException("Not a date in MM/DD/YYYY format: " + date);
+        }
+    }
+
+    /**
+     * Purpose: Gets the inventory of a flight on a date, creating it if this is
+     * the first booking for it.
+     *
+     * @param flightNum, is the flight's key in the flights table
+     * @param date, is the day it flies
+     * @return the inventory
+     * @throws IllegalArgumentException, if the flight was never stored or the date
+     * has already been evicted
+     */
+    public SeatInventory forBooking(long flightNum, LocalDate date) {
+        if (flightNum <= 0) {
+            throw new IllegalArgumentException("Only stored flights can be booked, got flightNum " + flightNum);
+        }
+        checkOpen(date);
+        SeatInventory inventory = byDate.computeIfAbsent(date, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(flightNum, num -> layout.newInventory());
+        //an eviction that ran in between leaves behind the map just created, so drop it again
+        if (date.isBefore(openFrom)) {
+            byDate.remove(date);
+            checkOpen(date);
+        }
+        return inventory;
+    }
+
+    // The inventory of a flight on a date, or null if nobody has booked it yet.
+    public SeatInventory peek(long flightNum, LocalDate date) {
+        Map<Long, SeatInventory> flights = byDate.get(date);
+        return flights == null ? null : flights.get(flightNum);
+    }
+
+    public boolean claim(long flightNum, LocalDate date, int... seats) {
+        return forBooking(flightNum, date).claim(seats);
+    }
+
+    /**
+     * Purpose: Claims n adjacent seats in one row of a flight on a date.
+     *
+     * @param flightNum, is the flight's key in the flights table
+     * @param date, is the day it flies
+     * @param n, is the group size, at most a row
+     * @return the seats claimed, or null if no row has n free together
+     */
+    public int[] claimTogether(long flightNum, LocalDate date, int n) {
+        return layout.claimTogether(forBooking(flightNum, date), n);
+    }
+
+    // Gives seats back. Nothing is created if the flight-day was never booked.
+    public int release(long flightNum, LocalDate date, int... seats) {
+        SeatInventory inventory = peek(flightNum, date);
+        return inventory == null ? 0 : inventory.release(seats);
+    }
+
+    public boolean isFree(long flightNum, LocalDate date, int seat) {
+        SeatInventory inventory = peek(flightNum, date);
+        if (inventory == null) {
+            if (seat < 0 || seat >= seatsPerFlight) {
+                throw new IllegalArgumentException("Seat " + seat + " is not between 0 and " + (seatsPerFlight - 1));
+            }
+            return true;
+        }
+        return inventory.isFree(seat);
+    }
+
+    public int freeCount(long flightNum, LocalDate date) {
+        SeatInventory inventory = peek(flightNum, date);
+        return inventory == null ? seatsPerFlight : inventory.freeCount();
+    }
+
+    /**
+     * Purpose: Drops every inventory for days before a date and closes those
+     * days to new bookings.
+     *
+     * @param date, is the first day to keep, usually today
+     * @return how many flight-day inventories were dropped
+     */
+    public synchronized int evictBefore(LocalDate date) {
+        if (date.isAfter(openFrom)) {
+            openFrom = date;
+        }
+        ConcurrentNavigableMap<LocalDate, ConcurrentHashMap<Long, SeatInventory>> past = byDate.headMap(openFrom);
+        int dropped = 0;
+        for (Map<Long, SeatInventory> flights : past.values()) {
+            dropped += flights.size();
+        }
+        past.clear();
+        return dropped;
+    }
+
+    /**
+     * Purpose: Evicts the days before today now, and again at every midnight
+     * after, on the wheel's thread.
+     *
+     * @param wheel, is the started TimerWheel to run on
+     * @param clock, gives the time and the time zone days start in
+     */
+    public void evictDaily(TimerWheel wheel, Clock clock) {
+        LocalDate today = LocalDate.now(clock);
+        evictBefore(today);
+        long untilMidnight = Duration.between(clock.instant(),
+                today.plusDays(1).atStartOfDay(clock.getZone())).toMillis();
+        wheel.schedule(() -> evictDaily(wheel, clock), untilMidnight, TimeUnit.MILLISECONDS);
+    }
+
+    private void checkOpen(LocalDate date) {
+        if (date.isBefore(openFrom)) {
+            throw new IllegalArgumentException(date.format(DATE_FORMAT) + " has already flown");
+        }
+    }
+
+    public CabinLayout getLayout() {
+        return layout;
+    }
+
+    public int getSeatsPerFlight() {
+        return seatsPerFlight;
+    }
+
+    // Days with at least one booked flight.
+    public int getNumDates() {
+        return byDate.size();
+    }
+
+    // Flight-days with an inventory.
+    public int getNumInventories() {
+        int count = 0;
+        for (Map<Long, SeatInventory> flights : byDate.values()) {
+            count += flights.size();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "SeatInventoryStore{" +
+                "dates=" + getNumDates() +
+                ", inventories=" + getNumInventories() +
+                ", layout=" + layout +
+                '}';
+    }
+}
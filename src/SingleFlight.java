@@ -0,0 +1,97 @@
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File: SingleFlight.java
+ *
+ * Purpose: Makes concurrent callers asking for the same key share one
+ * computation. The first caller for a key runs the work; everyone who asks
+ * for that key while it is running waits for it and gets the same result,
+ * or the same exception. Once the work finishes the key is forgotten, so the
+ * next caller computes afresh. Results are not kept; that is the cache's
+ * job. This stops a popular search whose cache entry just expired from being
+ * computed once per waiting user.
+ *
+ * Usage instructions:
+ *
+ * SingleFlight<SearchKey, List<Flight>> inFlight = new SingleFlight<>();
+ * List<Flight> flights = inFlight.run(key, () -> search(key));
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong computed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Purpose: Runs work for key, or waits for the run already in progress.
+     *
+     * @param key, is what is being computed
+     * @param work, is how to compute it
+     * @return the result of whichever call ran the work
+     * @throws Exception, whatever the work threw
+     */
+    public V run(K key, Callable<V> work) throws Exception {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return await(running);
+        }
+
+        computed.incrementAndGet();
+        try {
+            V result = work.call();
+            mine.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> running) throws Exception {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (Exception) cause;
+        }
+    }
+
+    // Keys being computed right now.
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    // Calls that ran their work.
+    public long getComputed() {
+        return computed.get();
+    }
+
+    // Calls that waited for someone else's run instead.
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight{" +
+                "inFlight=" + getInFlight() +
+                ", computed=" + getComputed() +
+                ", coalesced=" + getCoalesced() +
+                '}';
+    }
+}
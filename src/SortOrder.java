@@ -0,0 +1,75 @@
+import java.util.Comparator;
+
+/**
+ * File: SortOrder.java
+ *
+ * Purpose: The orders flight search results can be listed in. Each order
+ * ranks flights by one number, its sort key, and breaks ties by flightNum,
+ * the flights table's key, so every order is total and stable from one page
+ * to the next.
+ *
+ * CHEAPEST ranks by cost, FASTEST by duration, and BLEND by cost plus
+ * duration priced at BLEND_DOLLARS_PER_HOUR. The blend is linear, so the
+ * database can sort by it too. A flight beaten on both cost and time by
+ * another flight always ranks below that flight, so the top of the blend is
+ * always on the Pareto frontier.
+ *
+ * BLEND is what Main's "Blend (Best overall flight)" choice uses. It replaces
+ * the earlier Blend choice, which listed ParetoSearch.frontierOf over every
+ * flight loaded from the database. A blend ranking can be paged and pushed
+ * into SQL, and it ranks flights from the route index, which carry the flightNums
+ * that seats are booked against. ParetoSearch stays for code that works on
+ * a DGraph directly.
+ *
+ * Usage instructions:
+ *
+ * SortOrder order = SortOrder.fromChoice(2);   //FASTEST
+ * double key = order.key(flight.getCost(), flight.getDuration());
+ * flights.sort(order.comparator());
+ */
+public enum SortOrder {
+    CHEAPEST,
+    FASTEST,
+    BLEND;
+
+    //what an hour of flying is worth in dollars when blending
+    public static final double BLEND_DOLLARS_PER_HOUR = 40.0;
+
+    /**
+     * Purpose: Maps the numbers of the sorting menu to orders.
+     *
+     * @param choice, is 1 for cost, 2 for time or 3 for blend
+     * @return the order, CHEAPEST for anything else
+     */
+    public static SortOrder fromChoice(int choice) {
+        return switch (choice) {
+            case 2 -> FASTEST;
+            case 3 -> BLEND;
+            default -> CHEAPEST;
+        };
+    }
+
+    // The number flights are ranked by in this order, smallest first.
+    public double key(double cost, double duration) {
+        return switch (this) {
+            case CHEAPEST -> cost;
+            case FASTEST -> duration;
+            case BLEND -> cost + BLEND_DOLLARS_PER_HOUR * duration;
+        };
+    }
+
+    // The same key as an SQL expression over the flights table aliased as f.
+    public String sqlKey() {
+        return switch (this) {
+            case CHEAPEST -> "f.cost";
+            case FASTEST -> "f.duration";
+            case BLEND -> "(f.cost + " + BLEND_DOLLARS_PER_HOUR + " * f.duration)";
+        };
+    }
+
+    // Orders flights by key, then by flightNum.
+    public Comparator<Flight> comparator() {
+        return Comparator.<Flight>comparingDouble(flight -> key(flight.getCost(), flight.getDuration()))
+                .thenComparingLong(Flight::getFlightNum);
+    }
+}
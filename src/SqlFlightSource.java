@@ -0,0 +1,108 @@
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File: SqlFlightSource.java
+ *
+ * Purpose: Answers flight searches straight from the database. The ranking,
+ * the page's cursor and the limit are all pushed into the query, so SQLite
+ * walks the route's flights with the idx_flights_route index and only the
+ * flights on the page (and their legs) ever come back over JDBC. It suits
+ * a schedule too big to hold as a RouteIndex; FlightSearch.useSource()
+ * switches searches over to it.
+ *
+ * Usage instructions:
+ *
+ * FlightSource source = new SqlFlightSource();   //or new SqlFlightSource(pool) for another database
+ * FlightPage page = source.page(departCity, arrivalCity, nonstop, SortOrder.BLEND, null, 10);
+ * FlightPage next = source.page(departCity, arrivalCity, nonstop, SortOrder.BLEND, page.getNext(), 10);
+ */
+public class SqlFlightSource implements FlightSource {
+
+    //null for the program's database
+    private final ConnectionPool pool;
+
+    public SqlFlightSource() {
+        this(null);
+    }
+
+    public SqlFlightSource(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public FlightPage page(int departCity, int arrivalCity, boolean nonstop, SortOrder order, SearchCursor after,
+                           int pageSize) throws SQLException {
+        int fetch = FlightSource.fetchSize(pageSize);
+        if (after != null) {
+            after.checkOrder(order);
+        }
+        String key = order.sqlKey();
+        String orderBy = key + ", f.flightNum";
+        //the limit applies to flights, so it goes on the inner query before the legs multiply the rows
+        String query = "SELECT f.flightNum, f.ID, f.airline, f.duration, f.cost, f.numStops, f.dTime, l.toCity " +
+                "FROM (SELECT * FROM flights f WHERE f.dCity = ? AND f.aCity = ?" +
+                (nonstop ? " AND f.numStops = 0" : "") +
+                //keyset: only flights ranked after the cursor's (key, flightNum)
+                (after != null ? " AND (" + key + " > ? OR (" + key + " = ? AND f.flightNum > ?))" : "") +
+                " ORDER BY " + orderBy + " LIMIT ?) f " +
+                "JOIN itinerary_legs l ON l.flightNum = f.flightNum " +
+                "ORDER BY " + orderBy + ", l.legIndex";
+        StorageConfig.SqlWork<List<Flight>> work = conn -> {
+            try (PreparedStatement statement = conn.prepareStatement(query)) {
+                int param = 1;
+                statement.setInt(param++, departCity);
+                statement.setInt(param++, arrivalCity);
+                if (after != null) {
+                    statement.setDouble(param++, after.getSortKey());
+                    statement.setDouble(param++, after.getSortKey());
+                    statement.setLong(param++, after.getFlightNum());
+                }
+                statement.setInt(param, fetch);
+                try (ResultSet results = statement.executeQuery()) {
+                    return readFlights(results, departCity, arrivalCity);
+                }
+            }
+        };
+        List<Flight> fetched = pool == null ? Database.run(work) : Database.getConfig().run(pool, work);
+        return FlightPage.of(fetched, pageSize, order);
+    }
+
+    /*
+     * Turns rows of one flight per leg, each flight's legs together and in
+     * order, into Flights.
+     */
+    static List<Flight> readFlights(ResultSet results, int departCity, int arrivalCity) throws SQLException {
+        List<Flight> flights = new ArrayList<>();
+        long currentFlightNum = -1;
+        List<Integer> visitOrder = null;
+        while (results.next()) {
+            long flightNum = results.getLong("flightNum");
+            if (flightNum != currentFlightNum) {
+                Flight flight = new Flight();
+                int numStops = results.getInt("numStops");
+                flight.setFlightNum(flightNum);
+                flight.setID(results.getString("ID"));
+                flight.setAirlineName(results.getString("airline"));
+                flight.setDuration(results.getDouble("duration"));
+                flight.setCost(results.getDouble("cost"));
+                flight.setNumStops(numStops);
+                flight.setNonStop(numStops == 0);
+                flight.setDepartTime(results.getString("dTime"));
+                flight.setDepartCity(departCity);
+                flight.setArrivalCity(arrivalCity);
+                visitOrder = new ArrayList<>();
+                visitOrder.add(departCity);
+                flight.setVisitOrder(visitOrder);
+
+                flights.add(flight);
+                currentFlightNum = flightNum;
+            }
+            visitOrder.add(results.getInt("toCity"));
+        }
+        return flights;
+    }
+}
@@ -0,0 +1,188 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * File: StorageConfig.java
+ *
+ * Purpose: How the program talks to SQLite. Every new connection is switched
+ * to write-ahead logging (WAL), so searches keep reading while flights are
+ * being generated or booked, and gets tuned synchronous, cache and mmap
+ * settings plus a busy timeout. Foreign keys are switched on too, since
+ * SQLite leaves them off unless asked, so itinerary_legs rows go away with
+ * their flight. On top of SQLite's own busy timeout, run()
+ * retries work that still fails with SQLITE_BUSY or SQLITE_LOCKED a bounded
+ * number of times, backing off exponentially with jitter.
+ *
+ * Usage instructions:
+ *
+ * StorageConfig config = StorageConfig.defaults();
+ * config.apply(connection);                   //on every new connection
+ * T result = config.run(pool, conn -> ...);    //retried while the database is busy
+ */
+public class StorageConfig {
+
+    //SQLite result codes, extended codes keep these in their low byte
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    // Work to do with a borrowed connection.
+    public interface SqlWork<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private boolean walMode = true;
+    //NORMAL is safe with WAL and only syncs at checkpoints
+    private String synchronous = "NORMAL";
+    private int cacheSizeKb = 16 * 1024;
+    private long mmapSizeBytes = 256L * 1024 * 1024;
+    private int busyTimeoutMillis = 2000;
+    private boolean foreignKeys = true;
+    private int maxRetries = 5;
+    private long initialBackoffMillis = 10;
+    private long maxBackoffMillis = 500;
+
+    public static StorageConfig defaults() {
+        return new StorageConfig();
+    }
+
+    /**
+     * Purpose: Applies the settings to a freshly opened connection.
+     *
+     * @param conn, is the connection to set up
+     * @throws SQLException, if a setting cannot be applied
+     */
+    public void apply(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            //busy_timeout first so the journal mode switch itself can wait for other writers
+            statement.execute("PRAGMA busy_timeout = " + busyTimeoutMillis);
+            if (walMode) {
+                statement.execute("PRAGMA journal_mode = WAL");
+            }
+            statement.execute("PRAGMA synchronous = " + synchronous);
+            //a negative cache_size is in KiB rather than pages
+            statement.execute("PRAGMA cache_size = -" + cacheSizeKb);
+            statement.execute("PRAGMA mmap_size = " + mmapSizeBytes);
+            statement.execute("PRAGMA foreign_keys = " + (foreignKeys ? "ON" : "OFF"));
+        }
+    }
+
+    /**
+     * Purpose: Borrows a connection from the pool and runs work with it. If the
+     * work fails because the database is busy or locked, the connection is
+     * given back and the work is tried again after a growing, randomized wait,
+     * up to maxRetries more times.
+     *
+     * @param pool, is where to borrow connections from
+     * @param work, is what to do with the connection
+     * @return whatever work returns
+     * @throws SQLException, the last failure if the retries run out, or any other failure at once
+     */
+    public <T> T run(ConnectionPool pool, SqlWork<T> work) throws SQLException {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 0; ; attempt++) {
+            try (Connection conn = pool.getConnection()) {
+                return work.run(conn);
+            } catch (SQLException e) {
+                if (!isBusy(e) || attempt >= maxRetries) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting to retry", e);
+            }
+            backoff = Math.min(backoff * 2, maxBackoffMillis);
+        }
+    }
+
+    // Returns true if e means another connection holds a lock we need.
+    static boolean isBusy(SQLException e) {
+        int code = e.getErrorCode() & 0xff;
+        if (code == SQLITE_BUSY || code == SQLITE_LOCKED) {
+            return true;
+        }
+        String message = e.getMessage();
+        return message != null && (message.contains("SQLITE_BUSY") || message.contains("SQLITE_LOCKED")
+                || message.contains("database is locked"));
+    }
+
+    public boolean isWalMode() {
+        return walMode;
+    }
+
+    public void setWalMode(boolean walMode) {
+        this.walMode = walMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    // One of OFF, NORMAL, FULL or EXTRA.
+    public void setSynchronous(String synchronous) {
+        if (!synchronous.matches("(?i)OFF|NORMAL|FULL|EXTRA")) {
+            throw new IllegalArgumentException("Unknown synchronous setting " + synchronous);
+        }
+        this.synchronous = synchronous.toUpperCase();
+    }
+
+    public int getCacheSizeKb() {
+        return cacheSizeKb;
+    }
+
+    public void setCacheSizeKb(int cacheSizeKb) {
+        this.cacheSizeKb = cacheSizeKb;
+    }
+
+    public long getMmapSizeBytes() {
+        return mmapSizeBytes;
+    }
+
+    public void setMmapSizeBytes(long mmapSizeBytes) {
+        this.mmapSizeBytes = mmapSizeBytes;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    public void setBusyTimeoutMillis(int busyTimeoutMillis) {
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    public boolean isForeignKeys() {
+        return foreignKeys;
+    }
+
+    public void setForeignKeys(boolean foreignKeys) {
+        this.foreignKeys = foreignKeys;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+}
@@ -2,7 +2,30 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Scanner;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import static org.junit.Assert.*;
 
@@ -72,6 +95,1188 @@ public class TestCases {
 //        assertEquals(220.5, cost, 0);
 //    }
 
+    @Test
+    public void testDGraphWeightLookup() {
+        DGraph dGraph = new DGraph(4, "Delta");
+        dGraph.addEdge(3, 1, 2.5, 90.0);
+        dGraph.addEdge(1, 4, 1.5, 120.0);
+        dGraph.addEdge(1, 2, 1.0, 100.0);
+        dGraph.addEdge(1, 2, 9.0, 900.0);
+        assertEquals(100.0, dGraph.getWeight(1, 2, "cost"), 0);
+        assertEquals(1.5, dGraph.getWeight(1, 4, "time"), 0);
+        assertEquals(-1, dGraph.getWeight(2, 1, "cost"), 0);
+        //edges added after the first lookup must still be found
+        dGraph.addEdge(2, 1, 1.0, 50.0);
+        assertEquals(50.0, dGraph.getWeight(2, 1, "cost"), 0);
+        assertEquals("[2, 4]", dGraph.getNeighbors(1).toString());
+    }
+
+    @Test
+    public void testRouteFinderCheapestAndFastest() throws IOException {
+        DGraph dGraph = read("./PublicTestCases/united.mtx");
+        RouteFinder finder = new RouteFinder(dGraph);
+        Flight cheapest = finder.cheapest(1, 3);
+        Flight fastest = finder.fastest(1, 3);
+        //1 -> 2 -> 3 is $351.45 while the nonstop is $476.75
+        assertEquals("[1, 2, 3]", cheapest.getVisitOrder().toString());
+        assertEquals(351.45, cheapest.getCost(), 0.001);
+        assertEquals("[1, 3]", fastest.getVisitOrder().toString());
+        assertEquals(0, fastest.getNumStops());
+        assertNull(finder.cheapest(1, 1));
+    }
+
+    @Test
+    public void testParetoFrontier() {
+        DGraph dGraph = new DGraph(4, "Delta");
+        dGraph.addEdge(1, 4, 5.0, 100.0);
+        dGraph.addEdge(1, 2, 1.0, 150.0);
+        dGraph.addEdge(2, 4, 1.0, 150.0);
+        dGraph.addEdge(1, 3, 3.0, 200.0);
+        dGraph.addEdge(3, 4, 3.0, 200.0);
+        List<Flight> frontier = new ParetoSearch(dGraph).frontier(1, 4);
+        //1 -> 3 -> 4 is beaten on both cost and time by 1 -> 2 -> 4
+        assertEquals(2, frontier.size());
+        assertEquals("[1, 4]", frontier.get(0).getVisitOrder().toString());
+        assertEquals("[1, 2, 4]", frontier.get(1).getVisitOrder().toString());
+    }
+
+    @Test
+    public void testKShortestPathsInOrder() throws IOException {
+        DGraph dGraph = read("./PublicTestCases/united.mtx");
+        List<Flight> best = KShortestPaths.best(dGraph, 1, 3, "cost", 3);
+        assertEquals(3, best.size());
+        assertEquals("[1, 2, 3]", best.get(0).getVisitOrder().toString());
+        assertTrue(best.get(0).getCost() <= best.get(1).getCost());
+        assertTrue(best.get(1).getCost() <= best.get(2).getCost());
+    }
+
+    @Test
+    public void testKShortestPathsStaysExhausted() throws IOException {
+        DGraph dGraph = read("./PublicTestCases/united.mtx");
+        KShortestPaths paths = new KShortestPaths(dGraph, 1, 5, "time");
+        int count = 0;
+        while (paths.hasNext()) {
+            paths.next();
+            count++;
+        }
+        //the same simple paths PathEnumerator finds
+        assertEquals(16, count);
+        assertFalse(paths.hasNext());
+        assertFalse(paths.hasNext());
+        try {
+            paths.next();
+            fail("Expected no more paths");
+        } catch (NoSuchElementException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testPathEnumeratorCount() throws IOException {
+        DGraph dGraph = read("./PublicTestCases/united.mtx");
+        int[] count = new int[1];
+        new PathEnumerator(dGraph).enumerate(1, 5, (path, length) -> {
+            assertEquals(1, path[0]);
+            assertEquals(5, path[length - 1]);
+            count[0]++;
+        });
+        //every city is connected, so 1 nonstop + 3 one stop + 6 two stop + 6 three stop
+        assertEquals(16, count[0]);
+    }
+
+    @Test
+    public void testConstrainedSearch() throws IOException {
+        DGraph dGraph = read("./PublicTestCases/united.mtx");
+        SearchConstraints constraints = new SearchConstraints();
+        constraints.setMaxStops(0);
+        //the cheapest route has a stop, so the nonstop has to win
+        Flight cheapestNonstop = new RouteFinder(dGraph).shortest(1, 3, "cost", constraints);
+        assertEquals("[1, 3]", cheapestNonstop.getVisitOrder().toString());
+
+        int[] count = new int[1];
+        new PathEnumerator(dGraph).enumerate(1, 5, constraints, (path, length) -> count[0]++);
+        assertEquals(1, count[0]);
+
+        constraints.setAllowedAirlines(Set.of("Delta"));
+        assertNull(new RouteFinder(dGraph).shortest(1, 3, "cost", constraints));
+    }
+
+    @Test
+    public void testMtxLoader() throws IOException {
+        DGraph dGraph = MtxLoader.load("./PublicTestCases/united.mtx");
+        assertEquals("United", dGraph.getAirlineName());
+        assertEquals(5, dGraph.getNumNodes());
+        assertEquals(20, dGraph.getNumEdges());
+        assertEquals(1.7, dGraph.getWeight(1, 2, "time"), 0);
+        assertEquals(220.5, dGraph.getWeight(1, 2, "cost"), 0);
+    }
+
+    @Test
+    public void testMtxLoaderParallel() throws IOException {
+        DGraph dGraph = MtxLoader.loadParallel("./PublicTestCases/delta.mtx", 4);
+        DGraph expected = MtxLoader.load("./PublicTestCases/delta.mtx");
+        assertEquals(expected.getNumEdges(), dGraph.getNumEdges());
+        assertEquals(expected.toDotString(), dGraph.toDotString());
+    }
+
+    @Test
+    public void testGraphSnapshotRoundTrip() throws IOException {
+        DGraph dGraph = read("./PublicTestCases/american.mtx");
+        File snapshot = File.createTempFile("american", GraphSnapshot.EXTENSION);
+        snapshot.deleteOnExit();
+        GraphSnapshot.write(dGraph, snapshot.getPath());
+        DGraph loaded = GraphSnapshot.read(snapshot.getPath());
+        assertEquals("American", loaded.getAirlineName());
+        assertEquals(dGraph.getNumNodes(), loaded.getNumNodes());
+        assertEquals(dGraph.toDotString(), loaded.toDotString());
+    }
+
+    @Test
+    public void testStorageRetriesWhileBusy() throws Exception {
+        //a pool of stand-in connections so no database is needed
+        ConnectionPool pool = new ConnectionPool("unused", 1, 1000) {
+            @Override
+            protected Connection open(String connectionString) {
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                            switch (method.getName()) {
+                                case "isValid", "getAutoCommit": return true;
+                                case "isClosed": return false;
+                                default: return null;
+                            }
+                        });
+            }
+        };
+        StorageConfig config = StorageConfig.defaults();
+        config.setInitialBackoffMillis(1);
+        config.setMaxRetries(3);
+
+        int[] attempts = {0};
+        String result = config.run(pool, conn -> {
+            if (++attempts[0] < 3) {
+                throw new SQLException("[SQLITE_BUSY] The database file is locked (database is locked)", null, 5);
+            }
+            return "done";
+        });
+        assertEquals("done", result);
+        assertEquals(3, attempts[0]);
+        assertEquals(0, pool.getActive());
+
+        //other failures are not retried
+        attempts[0] = 0;
+        try {
+            config.run(pool, conn -> {
+                attempts[0]++;
+                throw new SQLException("no such table: flights", null, 1);
+            });
+            fail("Expected the error to be rethrown");
+        } catch (SQLException e) {
+            assertEquals(1, attempts[0]);
+        }
+        pool.close();
+    }
+
+    @Test
+    public void testRouteIndex() {
+        RouteIndex index = new RouteIndex.Builder()
+                .add(3, "AA1", "American", 1, 3, 4.5, 300.0, 1, "08:15", List.of(1, 2, 3))
+                .add(2, "AA2", "American", 1, 3, 1.2, 430.75, 0, "13:05", List.of(1, 3))
+                .add(1, "DL1", "Delta", 1, 3, 3.0, 300.0, 1, "23:59", List.of(1, 5, 3))
+                .add(4, "DL2", "Delta", 3, 1, 1.2, 430.75, 0, "06:00", List.of(3, 1))
+                .build();
+        assertEquals(2, index.getNumRoutes());
+        assertEquals(4, index.getNumFlights());
+
+        //cheapest first, ties broken by flightNum
+        RouteIndex.Route route = index.route(1, 3, false);
+        assertEquals(3, route.size());
+        assertEquals("DL1", route.id(0));
+        assertEquals("AA1", route.id(1));
+        assertEquals("AA2", route.id(2));
+        assertEquals(8 * 60 + 15, route.departMinute(1));
+
+        Flight flight = route.toFlight(0);
+        assertEquals(1, flight.getFlightNum());
+        assertEquals(List.of(1, 5, 3), flight.getVisitOrder());
+        assertEquals("23:59", flight.getDepartTime());
+        assertEquals(300.0, flight.getCost(), 0.0);
+
+        RouteIndex.Route nonstop = index.route(1, 3, true);
+        assertEquals(1, nonstop.size());
+        assertEquals("AA2", nonstop.id(0));
+        assertEquals(0, index.route(2, 4, false).size());
+    }
+
+    @Test
+    public void testTopKSortOrders() throws SQLException {
+        RouteIndex.Builder builder = new RouteIndex.Builder();
+        List<Flight> flights = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            //coarse values so plenty of keys tie and flightNum has to break them, IDs repeat
+            double duration = 1 + random.nextInt(8) * 0.5;
+            double cost = 100 + random.nextInt(20) * 25;
+            long flightNum = i * 37 % 200 + 1;
+            String id = "DL" + i % 5;
+            builder.add(flightNum, id, "Delta", 1, 2, duration, cost, 0, "10:00", List.of(1, 2));
+            Flight flight = new Flight();
+            flight.setFlightNum(flightNum);
+            flight.setID(id);
+            flight.setCost(cost);
+            flight.setDuration(duration);
+            flights.add(flight);
+        }
+        RouteIndex index = builder.build();
+
+        for (SortOrder order : SortOrder.values()) {
+            List<Flight> sorted = new ArrayList<>(flights);
+            sorted.sort(order.comparator());
+            for (int k : new int[]{1, 10, 200, 500}) {
+                List<Flight> expected = sorted.subList(0, Math.min(k, sorted.size()));
+                List<Flight> fromList = TopK.smallest(flights, k, order.comparator());
+                List<Flight> fromIndex = index.top(1, 2, false, order, k);
+                assertEquals(expected.size(), fromIndex.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertSame(expected.get(i), fromList.get(i));
+                    assertEquals(order.key(expected.get(i).getCost(), expected.get(i).getDuration()),
+                            order.key(fromIndex.get(i).getCost(), fromIndex.get(i).getDuration()), 0.0);
+                    assertEquals(expected.get(i).getFlightNum(), fromIndex.get(i).getFlightNum());
+                }
+            }
+        }
+        assertEquals(SortOrder.FASTEST, SortOrder.fromChoice(2));
+        assertEquals(100 + 2 * SortOrder.BLEND_DOLLARS_PER_HOUR, SortOrder.BLEND.key(100, 2), 0.0);
+    }
+
+    @Test
+    public void testCursorPagination() {
+        RouteIndex.Builder builder = new RouteIndex.Builder();
+        List<Flight> flights = new ArrayList<>();
+        Random random = new Random(11);
+        for (int i = 0; i < 95; i++) {
+            double duration = 1 + random.nextInt(6) * 0.5;
+            double cost = 100 + random.nextInt(10) * 25;
+            long flightNum = i * 31 % 95 + 1;
+            //IDs are random and can repeat, so they must not decide where a page ends
+            String id = "UN" + i % 4;
+            builder.add(flightNum, id, "United", 2, 5, duration, cost, i % 3, "09:30", List.of(2, 5));
+            Flight flight = new Flight();
+            flight.setFlightNum(flightNum);
+            flight.setID(id);
+            flight.setCost(cost);
+            flight.setDuration(duration);
+            flights.add(flight);
+        }
+        RouteIndex index = builder.build();
+
+        for (SortOrder order : SortOrder.values()) {
+            List<Flight> sorted = new ArrayList<>(flights);
+            sorted.sort(order.comparator());
+            //walk every page and check they join up into the full list, with nothing repeated or skipped
+            List<Long> paged = new ArrayList<>();
+            FlightPage page = index.page(2, 5, false, order, null, 10);
+            int pages = 1;
+            while (page.hasNext()) {
+                assertEquals(10, page.getFlights().size());
+                page.getFlights().forEach(flight -> paged.add(flight.getFlightNum()));
+                page = index.page(2, 5, false, order, page.getNext(), 10);
+                pages++;
+            }
+            page.getFlights().forEach(flight -> paged.add(flight.getFlightNum()));
+            assertEquals(10, pages);
+            assertEquals(sorted.size(), paged.size());
+            for (int i = 0; i < sorted.size(); i++) {
+                assertEquals(sorted.get(i).getFlightNum(), (long) paged.get(i));
+            }
+        }
+
+        //a cursor from one order cannot be used with another
+        FlightPage cheapest = index.page(2, 5, false, SortOrder.CHEAPEST, null, 10);
+        try {
+            index.page(2, 5, false, SortOrder.FASTEST, cheapest.getNext(), 10);
+            fail("Expected the cursor to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("CHEAPEST"));
+        }
+    }
+
+    @Test
+    public void testSearchCache() {
+        long[] now = {0};
+        SearchCache<SearchKey, String> cache = new SearchCache<>(2, 1000, () -> now[0]);
+        SearchKey seattleToVegas = new SearchKey(1, 4, false, SortOrder.CHEAPEST, 10);
+        SearchKey vegasToSeattle = new SearchKey(4, 1, false, SortOrder.CHEAPEST, 10);
+        SearchKey laToSf = new SearchKey(5, 3, true, SortOrder.CHEAPEST, 10);
+
+        assertNull(cache.get(seattleToVegas));
+        cache.put(seattleToVegas, "a", cache.generation());
+        cache.put(vegasToSeattle, "b", cache.generation());
+        assertEquals("a", cache.get(new SearchKey(1, 4, false, SortOrder.CHEAPEST, 10)));
+
+        //vegasToSeattle is now the least recently used
+        cache.put(laToSf, "c", cache.generation());
+        assertNull(cache.get(vegasToSeattle));
+        assertEquals(1, cache.getEvictions());
+
+        //entries expire a second after they were stored
+        now[0] = TimeUnit.MILLISECONDS.toNanos(1000);
+        assertNull(cache.get(laToSf));
+        assertEquals(1, cache.getExpirations());
+
+        //a result computed before an invalidation is not stored
+        long generation = cache.generation();
+        cache.invalidateIf(key -> key.connects(4, 1));
+        assertEquals(0, cache.size());
+        assertFalse(cache.put(seattleToVegas, "stale", generation));
+        assertTrue(cache.put(seattleToVegas, "fresh", cache.generation()));
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testSingleFlightCoalesces() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        Callable<Integer> slowSearch = () -> {
+            runs.incrementAndGet();
+            release.await();
+            return 42;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Integer> first = executor.submit(() -> singleFlight.run("1-4", slowSearch));
+        while (singleFlight.getInFlight() == 0) {
+            Thread.yield();
+        }
+        Future<Integer> second = executor.submit(() -> singleFlight.run("1-4", slowSearch));
+        while (singleFlight.getCoalesced() == 0) {
+            Thread.yield();
+        }
+        release.countDown();
+
+        assertEquals(42, (int) first.get());
+        assertEquals(42, (int) second.get());
+        assertEquals(1, runs.get());
+        assertEquals(0, singleFlight.getInFlight());
+
+        //once finished, the next call computes again
+        assertEquals(42, (int) singleFlight.run("1-4", slowSearch));
+        assertEquals(2, runs.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSeatInventoryNeverDoubleSells() throws Exception {
+        SeatInventory seats = CabinLayout.STANDARD.newInventory();
+        assertTrue(seats.claim(3, 70));
+        assertFalse(seats.isFree(70));
+        //all or nothing: 4 is free but 70 is not, so neither is taken
+        assertFalse(seats.claim(4, 70));
+        assertTrue(seats.isFree(4));
+        assertEquals(118, seats.freeCount());
+        assertEquals(2, seats.release(3, 70, 5));
+        assertEquals(120, seats.freeCount());
+
+        //every thread tries to book pairs of seats that straddle both words
+        int threads = 8;
+        AtomicIntegerArray owner = new AtomicIntegerArray(CabinLayout.STANDARD.getNumSeats());
+        AtomicInteger booked = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 1; t <= threads; t++) {
+            int me = t;
+            done.add(executor.submit(() -> {
+                Random random = new Random(me);
+                for (int i = 0; i < 2000; i++) {
+                    int low = random.nextInt(64);
+                    int high = 64 + random.nextInt(CabinLayout.STANDARD.getNumSeats() - 64);
+                    if (seats.claim(low, high)) {
+                        //someone else already owning one of them would mean it was sold twice
+                        assertTrue(owner.compareAndSet(low, 0, me));
+                        assertTrue(owner.compareAndSet(high, 0, me));
+                        booked.addAndGet(2);
+                        if (random.nextBoolean()) {
+                            owner.set(low, 0);
+                            owner.set(high, 0);
+                            booked.addAndGet(-seats.release(low, high));
+                        }
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        executor.shutdown();
+        assertEquals(CabinLayout.STANDARD.getNumSeats() - booked.get(), seats.freeCount());
+        int taken = 0;
+        for (int seat = 0; seat < CabinLayout.STANDARD.getNumSeats(); seat++) {
+            if (!seats.isFree(seat)) {
+                taken++;
+            }
+        }
+        assertEquals(booked.get(), taken);
+    }
+
+    @Test
+    public void testSeatInventoryStoreByDate() {
+        SeatInventoryStore store = new SeatInventoryStore(CabinLayout.STANDARD);
+        LocalDate july4 = SeatInventoryStore.parseDate("07/04/2026");
+        LocalDate july5 = SeatInventoryStore.parseDate("07/05/2026");
+
+        //nothing is allocated until the first booking
+        assertEquals(120, store.freeCount(101, july4));
+        assertTrue(store.isFree(101, july4, 7));
+        assertEquals(0, store.getNumInventories());
+
+        assertTrue(store.claim(101, july4, 7, 8));
+        assertFalse(store.claim(101, july4, 8));
+        //the same seat on another day or another flight is a different seat
+        assertTrue(store.claim(101, july5, 8));
+        assertTrue(store.claim(202, july4, 8));
+        assertEquals(118, store.freeCount(101, july4));
+        assertEquals(2, store.getNumDates());
+        assertEquals(3, store.getNumInventories());
+
+        //july 4th has flown
+        assertEquals(2, store.evictBefore(july5));
+        assertEquals(1, store.getNumInventories());
+        try {
+            store.claim(101, july4, 9);
+            fail("Expected evicted days to stay closed");
+        } catch (IllegalArgumentException e) {
+            assertEquals(1, store.getNumInventories());
+        }
+
+        //a flight that was never stored has no key to book under
+        try {
+            store.claim(0, july5, 1);
+            fail("Expected an unstored flight to be refused");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("stored"));
+        }
+
+        try {
+            SeatInventoryStore.parseDate("02/30/2026");
+            fail("Expected February 30th to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("MM/DD/YYYY"));
+        }
+    }
+
+    @Test
+    public void testTimerWheelExpiresSeatHolds() {
+        long[] now = {0};
+        TimerWheel wheel = new TimerWheel(10, 8, () -> now[0]);
+        SeatHolds holds = new SeatHolds(new SeatInventoryStore(CabinLayout.STANDARD), wheel, 1000);
+        LocalDate date = SeatInventoryStore.parseDate("12/24/2026");
+
+        SeatHolds.Hold kept = holds.hold(500, date, 1, 2);
+        SeatHolds.Hold confirmed = holds.hold(500, date, 3);
+        SeatHolds.Hold released = holds.hold(500, date, 4);
+        assertNull(holds.hold(500, date, 2, 5));
+        assertTrue(confirmed.confirm());
+        assertTrue(released.release());
+        assertTrue(holds.getStore().isFree(500, date, 4));
+
+        //a second is many turns of an 8 bucket wheel, nothing may expire early
+        now[0] = 990;
+        assertEquals(0, wheel.advance());
+        assertTrue(kept.isHeld());
+
+        now[0] = 1000;
+        assertEquals(1, wheel.advance());
+        assertTrue(kept.isExpired());
+        assertFalse(kept.confirm());
+        assertTrue(holds.getStore().isFree(500, date, 1));
+        assertFalse(holds.getStore().isFree(500, date, 3));
+        assertEquals(0, holds.getActive());
+        assertEquals(1, holds.getExpired());
+
+        //cancelled timeouts are cleared away without running
+        now[0] = 5000;
+        wheel.advance();
+        assertEquals(0, wheel.getPending());
+        assertEquals(1, wheel.getExpired());
+    }
+
+    @Test
+    public void testItineraryBookingAllOrNothing() throws Exception {
+        SeatInventoryStore store = new SeatInventoryStore(CabinLayout.STANDARD);
+        ItineraryBooking booking = new ItineraryBooking(store);
+        LocalDate out = SeatInventoryStore.parseDate("03/01/2026");
+        LocalDate back = SeatInventoryStore.parseDate("03/08/2026");
+
+        //the return seat is gone, so the outbound seat must not stay taken either
+        assertTrue(store.claim(301, back, 9));
+        assertFalse(booking.book(List.of(new ItineraryBooking.Leg(300, out, 9),
+                new ItineraryBooking.Leg(301, back, 9))));
+        assertTrue(store.isFree(300, out, 9));
+        store.release(301, back, 9);
+
+        //round trips race for the same seat numbers, listing their legs in either order
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int me = t;
+            done.add(executor.submit(() -> {
+                Random random = new Random(me);
+                for (int i = 0; i < 3000; i++) {
+                    int seat = random.nextInt(CabinLayout.STANDARD.getNumSeats());
+                    ItineraryBooking.Leg there = new ItineraryBooking.Leg(300, out, seat);
+                    ItineraryBooking.Leg home = new ItineraryBooking.Leg(301, back, seat);
+                    List<ItineraryBooking.Leg> trip = random.nextBoolean() ? List.of(there, home) : List.of(home, there);
+                    if (booking.book(trip) && random.nextInt(3) > 0) {
+                        booking.cancel(trip);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        executor.shutdown();
+
+        //every seat is either taken on both legs or free on both
+        for (int seat = 0; seat < CabinLayout.STANDARD.getNumSeats(); seat++) {
+            assertEquals(store.isFree(300, out, seat), store.isFree(301, back, seat));
+        }
+        assertEquals(store.freeCount(300, out), store.freeCount(301, back));
+        assertTrue(booking.getBooked() > 0);
+    }
+
+    @Test
+    public void testCabinGroupAllocation() {
+        //11 rows of 6, so row 11 is seats 60 to 65 and crosses from the first bitmap word into the second
+        CabinLayout cabin = new CabinLayout(11, 6);
+        SeatInventory seats = cabin.newInventory();
+        int[] front = new int[60];
+        for (int seat = 0; seat < 60; seat++) {
+            front[seat] = seat;
+        }
+        assertTrue(seats.claim(front));
+        assertEquals(60, cabin.findTogether(seats, 6));
+        assertTrue(seats.claim(62));
+        assertEquals(-1, cabin.findTogether(seats, 6));
+        assertEquals(63, cabin.findTogether(seats, 3));
+        assertEquals("11D", cabin.label(63));
+
+        //58 to 61 are free and numbered in a run, but they are two rows
+        assertEquals(2, seats.release(58, 59));
+        assertEquals(-1, cabin.findTogether(seats, 4));
+        assertEquals(58, cabin.findTogether(seats, 2));
+        assertArrayEquals(new int[]{58, 59}, cabin.claimTogether(seats, 2));
+        assertArrayEquals(new int[]{60, 61}, cabin.claimTogether(seats, 2));
+        assertArrayEquals(new int[]{63, 64, 65}, cabin.claimTogether(seats, 3));
+        assertNull(cabin.claimTogether(seats, 1));
+        try {
+            cabin.findTogether(seats, 7);
+            fail("a group bigger than a row cannot sit together");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+
+        //the word search agrees with looking at every seat
+        Random random = new Random(25);
+        for (int round = 0; round < 200; round++) {
+            SeatInventory scattered = CabinLayout.STANDARD.newInventory();
+            for (int seat = 0; seat < CabinLayout.STANDARD.getNumSeats(); seat++) {
+                if (random.nextInt(3) == 0) {
+                    scattered.claim(seat);
+                }
+            }
+            int n = 1 + random.nextInt(6);
+            int expected = -1;
+            for (int seat = 0; seat < CabinLayout.STANDARD.getNumSeats() && expected < 0; seat++) {
+                boolean fits = seat % 6 + n <= 6;
+                for (int i = 0; fits && i < n; i++) {
+                    fits = scattered.isFree(seat + i);
+                }
+                if (fits) {
+                    expected = seat;
+                }
+            }
+            assertEquals(expected, CabinLayout.STANDARD.findTogether(scattered, n));
+        }
+
+        //a party's hold is the first row with room, and comes back whole if it expires
+        long[] now = {0};
+        TimerWheel wheel = new TimerWheel(100, 8, () -> now[0]);
+        SeatInventoryStore store = new SeatInventoryStore(CabinLayout.STANDARD);
+        SeatHolds holds = new SeatHolds(store, wheel, 1000);
+        LocalDate date = LocalDate.of(2026, 7, 4);
+        assertTrue(store.claim(302, date, 2));
+        SeatHolds.Hold family = holds.holdTogether(302, date, 4);
+        assertArrayEquals(new int[]{6, 7, 8, 9}, family.getSeats());
+        assertEquals("2A", store.getLayout().label(family.getSeats()[0]));
+        now[0] = 1000;
+        wheel.advance();
+        assertTrue(family.isExpired());
+        assertEquals(CabinLayout.STANDARD.getNumSeats() - 1, store.freeCount(302, date));
+    }
+
+    @Test
+    public void testParallelGenerationMatchesSequential() {
+        //three small airlines with different shapes, so the first hops fan out unevenly
+        Random random = new Random(6);
+        List<DGraph> airlines = new ArrayList<>();
+        for (String name : new String[]{"United", "American", "Delta"}) {
+            DGraph dGraph = new DGraph(6, name);
+            for (int v = 1; v <= 6; v++) {
+                for (int w = 1; w <= 6; w++) {
+                    if (v != w && random.nextInt(3) > 0) {
+                        dGraph.addEdge(v, w, 1 + random.nextInt(5), 50 + random.nextInt(200));
+                    }
+                }
+            }
+            airlines.add(dGraph);
+        }
+
+        List<String> sequential = new ArrayList<>();
+        GenerateFlightsDB.findAllFlights(airlines,
+                flight -> sequential.add(flight.getAirlineName() + flight.getVisitOrder() + flight.getCost()));
+        List<String> parallel = new ArrayList<>();
+        GenerateFlightsDB.findAllFlightsParallel(airlines, 4,
+                flight -> parallel.add(flight.getAirlineName() + flight.getVisitOrder() + flight.getCost()));
+        assertTrue(sequential.size() > 100);
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testConfirmAllTakesBackEarlierLegs() {
+        long[] now = {0};
+        TimerWheel wheel = new TimerWheel(10, 8, () -> now[0]);
+        SeatInventoryStore store = new SeatInventoryStore(CabinLayout.STANDARD);
+        SeatHolds holds = new SeatHolds(store, wheel, 1000);
+        ItineraryBooking booking = new ItineraryBooking(store);
+        LocalDate out = SeatInventoryStore.parseDate("03/01/2026");
+        LocalDate back = SeatInventoryStore.parseDate("03/08/2026");
+
+        //the return seat was held first and runs out while the outbound one is still held
+        SeatHolds.Hold home = holds.hold(301, back, 9);
+        now[0] = 600;
+        wheel.advance();
+        SeatHolds.Hold there = holds.hold(300, out, 9);
+        now[0] = 1000;
+        wheel.advance();
+        assertTrue(home.isExpired());
+        assertTrue(there.isHeld());
+
+        //the outbound leg is confirmed first and then has to be taken back
+        assertFalse(booking.confirmAll(List.of(home, there)));
+        assertFalse(there.isConfirmed());
+        assertTrue(there.isReleased());
+        assertTrue(store.isFree(300, out, 9));
+        assertTrue(store.isFree(301, back, 9));
+        assertEquals(0, holds.getConfirmed());
+        assertEquals(1, holds.getReleased());
+        assertEquals(0, holds.getActive());
+        assertEquals(1, booking.getConflicts());
+
+        //taking it back also cancelled its timeout, so nothing is released twice
+        now[0] = 2000;
+        wheel.advance();
+        assertEquals(1, holds.getExpired());
+    }
+
+    @Test
+    public void testSchemaMigrationFromVersionOne() throws Exception {
+        File file = File.createTempFile("flights-v1", ".db");
+        String url = "jdbc:sqlite:" + file.getPath();
+        try (Connection conn = DriverManager.getConnection(url)) {
+            StorageConfig.defaults().apply(conn);
+            try (Statement statement = conn.createStatement()) {
+                //a database as version 1 left it, with the route as text
+                statement.executeUpdate("CREATE TABLE Users (username TEXT, pass TEXT, email TEXT, phone TEXT)");
+                statement.executeUpdate("CREATE TABLE Flights (airline TEXT, dCity INTEGER, aCity INTEGER, " +
+                        "duration NUMERIC, cost TEXT, numStops INTEGER, obj BLOB, ID TEXT, visitOrder TEXT, " +
+                        "dTime TEXT)");
+                statement.executeUpdate("INSERT INTO Flights VALUES ('United', '1', '3', 2.5, '120.456', 1, " +
+                        "NULL, 'UN100AB', '[1, 2, 3]', '10:00')");
+                statement.executeUpdate("INSERT INTO Flights VALUES ('Delta', 2, 1, 1, '80', 0, NULL, " +
+                        "'DE200CD', '[2, 1]', '11:00')");
+                statement.executeUpdate("PRAGMA user_version = 1");
+            }
+
+            assertEquals(1, SchemaMigrations.migrate(conn));
+            assertEquals(SchemaMigrations.latestVersion(), SchemaMigrations.currentVersion(conn));
+            assertEquals(0, SchemaMigrations.migrate(conn));
+
+            try (Statement statement = conn.createStatement()) {
+                ResultSet flight = statement.executeQuery("SELECT dCity, aCity, cost FROM flights " +
+                        "WHERE ID = 'UN100AB'");
+                assertTrue(flight.next());
+                assertEquals(1, flight.getInt(1));
+                assertEquals(3, flight.getInt(2));
+                assertEquals(120.46, flight.getDouble(3), 1e-9);
+                flight.close();
+
+                //"[1, 2, 3]" became the legs 1 -> 2 and 2 -> 3
+                ResultSet legs = statement.executeQuery("SELECT fromCity, toCity FROM itinerary_legs " +
+                        "JOIN flights USING (flightNum) WHERE ID = 'UN100AB' ORDER BY legIndex");
+                List<String> route = new ArrayList<>();
+                while (legs.next()) {
+                    route.add(legs.getInt(1) + "-" + legs.getInt(2));
+                }
+                legs.close();
+                assertEquals(List.of("1-2", "2-3"), route);
+
+                //foreign keys are back on, so legs go with their flight and cannot point at nothing
+                ResultSet on = statement.executeQuery("PRAGMA foreign_keys");
+                assertTrue(on.next() && on.getInt(1) == 1);
+                on.close();
+                statement.executeUpdate("DELETE FROM flights WHERE ID = 'UN100AB'");
+                ResultSet left = statement.executeQuery("SELECT COUNT(*) FROM itinerary_legs");
+                assertTrue(left.next());
+                assertEquals(1, left.getInt(1));
+                left.close();
+                try {
+                    statement.executeUpdate("INSERT INTO itinerary_legs VALUES (999, 0, 1, 2)");
+                    fail("a leg of a flight that does not exist was stored");
+                } catch (SQLException e) {
+                    //expected
+                }
+            }
+        } finally {
+            for (String suffix : new String[]{"", "-wal", "-shm"}) {
+                new File(file.getPath() + suffix).delete();
+            }
+        }
+    }
+
+    @Test
+    public void testSeatInventoryEvictedDaily() throws Exception {
+        long[] now = {Instant.parse("2026-07-04T12:00:00Z").toEpochMilli()};
+        TimerWheel wheel = new TimerWheel(1000, 64, () -> now[0]);
+        Clock clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneOffset.UTC;
+            }
+
+            @Override
+            public Clock withZone(ZoneId zone) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now[0]);
+            }
+        };
+        SeatInventoryStore store = new SeatInventoryStore(CabinLayout.STANDARD);
+        LocalDate july3 = SeatInventoryStore.parseDate("07/03/2026");
+        LocalDate july4 = SeatInventoryStore.parseDate("07/04/2026");
+        assertTrue(store.claim(101, july3, 1));
+        assertTrue(store.claim(101, july4, 1));
+
+        //yesterday goes at once, today at midnight
+        store.evictDaily(wheel, clock);
+        assertEquals(1, store.getNumDates());
+        now[0] = Instant.parse("2026-07-04T23:59:59Z").toEpochMilli();
+        wheel.advance();
+        assertEquals(1, store.getNumDates());
+        now[0] = Instant.parse("2026-07-05T00:00:00Z").toEpochMilli();
+        wheel.advance();
+        assertEquals(0, store.getNumDates());
+        //and it is scheduled for the next midnight again
+        assertEquals(1, wheel.getPending());
+
+        //bookings racing an eviction never leave the evicted day behind
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            LocalDate first = SeatInventoryStore.parseDate("07/06/2026");
+            for (int round = 0; round < 500; round++) {
+                LocalDate day = first.plusDays(round);
+                CountDownLatch go = new CountDownLatch(1);
+                List<Future<?>> done = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    int me = t;
+                    done.add(executor.submit(() -> {
+                        go.await();
+                        for (int i = 0; i < 1000; i++) {
+                            try {
+                                store.claim(me * 1000L + i + 1, day, 0);
+                            } catch (IllegalArgumentException e) {
+                                return null;
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                go.countDown();
+                //evict once the bookings are under way
+                while (store.getNumInventories() < 8) {
+                    Thread.onSpinWait();
+                }
+                store.evictBefore(day.plusDays(1));
+                for (Future<?> future : done) {
+                    future.get();
+                }
+                assertEquals(0, store.getNumDates());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFlightPipelineBackpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Flight> stored = new ArrayList<>();
+        FlightPipeline pipeline = new FlightPipeline(2, flight -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stored.add(flight);
+        });
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Flight flight = new Flight();
+            flight.setFlightNum(i);
+            flights.add(flight);
+        }
+
+        //the consumer is stuck, so the producer gets one flight to it and two into the queue, then blocks
+        AtomicInteger submitted = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            for (Flight flight : flights) {
+                pipeline.submit(flight);
+                submitted.incrementAndGet();
+            }
+        });
+        producer.start();
+        producer.join(300);
+        assertTrue(producer.isAlive());
+        assertTrue(submitted.get() <= 3);
+
+        release.countDown();
+        producer.join();
+        assertEquals(10, pipeline.finish());
+        assertEquals(flights, stored);
+        assertFalse(pipeline.isRunning());
+    }
+
+    @Test
+    public void testFlightPipelineConsumerFailure() {
+        //what FlightBatchWriter.add throws when a batch fails, and what storeAll catches
+        IllegalStateException broken = new IllegalStateException("Storing flights failed");
+        AtomicInteger attempts = new AtomicInteger();
+        FlightPipeline pipeline = new FlightPipeline(4, flight -> {
+            if (attempts.incrementAndGet() == 3) {
+                throw broken;
+            }
+        });
+        //far more than the queue holds, the producer is stopped soon after the failure instead of blocking
+        int submitted = 0;
+        try {
+            for (; submitted < 100; submitted++) {
+                pipeline.submit(new Flight());
+            }
+            fail("Expected submit to stop once the consumer failed");
+        } catch (IllegalStateException e) {
+            assertSame(broken, e);
+        }
+        //the failed flight, a full queue and the one put that was waiting
+        assertTrue(submitted <= 3 + 4 + 1);
+        try {
+            pipeline.finish();
+            fail("Expected the consumer's failure to reach the producer");
+        } catch (IllegalStateException e) {
+            assertSame(broken, e);
+        }
+        assertEquals(3, attempts.get());
+        assertFalse(pipeline.isRunning());
+
+        //nothing submitted is also a clean shutdown
+        FlightPipeline empty = new FlightPipeline(4, flight -> {
+            throw new IllegalStateException("nothing was submitted");
+        });
+        assertEquals(0, empty.finish());
+        assertFalse(empty.isRunning());
+    }
+
+    @Test
+    public void testFlightBatchWriterCommitsPerBatch() throws Exception {
+        File file = File.createTempFile("flights-batch", ".db");
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + file.getPath(), 2, 1000);
+        try {
+            try (Connection conn = pool.getConnection()) {
+                SchemaMigrations.migrate(conn);
+            }
+            FlightBatchWriter writer = new FlightBatchWriter(pool, 3);
+            for (int i = 0; i < 7; i++) {
+                writer.add(batchFlight("Delta"), "DL" + i);
+            }
+            //two full batches are committed and visible to other connections, the seventh is not yet
+            assertEquals(6, writer.getRowsWritten());
+            assertEquals(6, countRows(pool, "flights"));
+            assertEquals(12, countRows(pool, "itinerary_legs"));
+            writer.close();
+            assertEquals(7, countRows(pool, "flights"));
+
+            //a batch that fails part way is rolled back whole, the batches before it stay
+            FlightBatchWriter failing = new FlightBatchWriter(pool, 3);
+            failing.add(batchFlight("United"), "UN1");
+            failing.add(batchFlight("United"), "UN2");
+            failing.add(batchFlight("United"), "UN3");
+            failing.add(batchFlight("United"), "UN4");
+            failing.add(batchFlight("United"), "UN5");
+            try {
+                //no airline breaks NOT NULL when the batch is sent
+                failing.add(batchFlight(null), "UN6");
+                fail("Expected the batch to fail");
+            } catch (IllegalStateException e) {
+                assertTrue(e.getCause() instanceof SQLException);
+            }
+            failing.close();
+            assertEquals(3, failing.getRowsWritten());
+            assertEquals(10, countRows(pool, "flights"));
+            assertEquals(20, countRows(pool, "itinerary_legs"));
+
+            //the same when the batch fails in a flush called directly, and close() does not send it again
+            FlightBatchWriter flushed = new FlightBatchWriter(pool, 10);
+            flushed.add(batchFlight("Alaska"), "AS1");
+            flushed.add(batchFlight(null), "AS2");
+            try {
+                flushed.flush();
+                fail("Expected the flush to fail");
+            } catch (SQLException e) {
+                //expected
+            }
+            flushed.close();
+            assertEquals(0, flushed.getRowsWritten());
+            assertEquals(10, countRows(pool, "flights"));
+            assertEquals(20, countRows(pool, "itinerary_legs"));
+            assertEquals(0, pool.getActive());
+        } finally {
+            pool.close();
+            for (String suffix : new String[]{"", "-wal", "-shm"}) {
+                new File(file.getPath() + suffix).delete();
+            }
+        }
+    }
+
+    private static Flight batchFlight(String airline) {
+        Flight flight = new Flight();
+        flight.setAirlineName(airline);
+        flight.setDepartCity(1);
+        flight.setArrivalCity(3);
+        flight.setVisitOrder(List.of(1, 2, 3));
+        flight.setNumStops(1);
+        flight.setCost(250.0);
+        flight.setDuration(3.5);
+        flight.setDepartTime("09:00");
+        return flight;
+    }
+
+    private static int countRows(ConnectionPool pool, String table) throws SQLException {
+        try (Connection conn = pool.getConnection();
+             Statement statement = conn.createStatement();
+             ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            results.next();
+            return results.getInt(1);
+        }
+    }
+
+    @Test
+    public void testConnectionPool() throws Exception {
+        List<Connection> opened = new ArrayList<>();
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite::memory:", 2, 50) {
+            @Override
+            protected Connection open(String connectionString) throws SQLException {
+                Connection physical = super.open(connectionString);
+                opened.add(physical);
+                return physical;
+            }
+        };
+        try {
+            //no more than maxSize connections are handed out, the next borrower times out
+            Connection first = pool.getConnection();
+            Connection second = pool.getConnection();
+            assertEquals(2, pool.getActive());
+            try {
+                pool.getConnection();
+                fail("Expected the borrow to time out");
+            } catch (SQLException e) {
+                assertEquals(1, pool.getTimeouts());
+            }
+            assertEquals(2, pool.getCreated());
+
+            //closing the wrapper gives the connection back instead of closing it
+            first.close();
+            first.close();
+            assertTrue(first.isClosed());
+            assertEquals(1, pool.getReturned());
+            assertEquals(1, pool.getIdle());
+            assertEquals(1, pool.getActive());
+            assertFalse(opened.get(0).isClosed());
+            try {
+                first.createStatement();
+                fail("Expected a returned connection to refuse calls");
+            } catch (SQLException e) {
+                //expected
+            }
+            Connection reused = pool.getConnection();
+            assertEquals(2, pool.getCreated());
+            assertEquals(0, pool.getIdle());
+
+            //a connection that went bad while idle is thrown away and replaced
+            reused.close();
+            second.close();
+            assertEquals(2, pool.getIdle());
+            for (Connection physical : opened) {
+                physical.close();
+            }
+            Connection fresh = pool.getConnection();
+            assertEquals(2, pool.getDiscarded());
+            assertEquals(3, pool.getCreated());
+            assertTrue(fresh.isValid(1));
+            fresh.close();
+            assertEquals(0, pool.getActive());
+        } finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testFlightSeatsKeyedOnFlightNum() {
+        LocalDate date = SeatInventoryStore.parseDate("01/15/2099");
+        //two itineraries that drew the same random ID
+        Flight first = new Flight();
+        first.setID("DE101AB");
+        first.setFlightNum(9000001);
+        Flight second = new Flight();
+        second.setID("DE101AB");
+        second.setFlightNum(9000002);
+
+        assertTrue(first.bookSeats(date, List.of(4, 5)));
+        assertFalse(first.isSeatAvailable(date, 4));
+        assertTrue(second.isSeatAvailable(date, 4));
+        assertTrue(second.bookSeats(date, List.of(4)));
+        assertFalse(first.bookSeats(date, List.of(5)));
+        SeatInventoryStore.shared().release(9000001, date, 4, 5);
+        SeatInventoryStore.shared().release(9000002, date, 4);
+    }
+
+    @Test
+    public void testSqlFlightSourceMatchesRouteIndex() throws Exception {
+        File file = File.createTempFile("flights-sql", ".db");
+        ConnectionPool pool = tiedFlightsDatabase(file, 120, 13);
+        try {
+            RouteIndex index;
+            try (Connection conn = pool.getConnection()) {
+                index = RouteIndex.load(conn);
+            }
+            SqlFlightSource sql = new SqlFlightSource(pool);
+            for (SortOrder order : SortOrder.values()) {
+                for (boolean nonstop : new boolean[]{false, true}) {
+                    for (int k : new int[]{1, 10, 200}) {
+                        assertEquals(flightNums(index.top(1, 3, nonstop, order, k)),
+                                flightNums(sql.top(1, 3, nonstop, order, k)));
+                    }
+                }
+            }
+            //the legs come back with the flights
+            assertEquals(index.top(1, 3, false, SortOrder.FASTEST, 5).toString(),
+                    sql.top(1, 3, false, SortOrder.FASTEST, 5).toString());
+
+            //FlightSearch can be pointed at the database instead of the index
+            FlightSearch.useSource(sql);
+            try {
+                assertEquals(flightNums(index.top(1, 3, false, SortOrder.BLEND, 10)),
+                        flightNums(FlightSearch.find(1, 3, false, SortOrder.BLEND, 10)));
+            } finally {
+                FlightSearch.useSource(null);
+            }
+        } finally {
+            pool.close();
+            for (String suffix : new String[]{"", "-wal", "-shm"}) {
+                new File(file.getPath() + suffix).delete();
+            }
+        }
+    }
+
+    @Test
+    public void testSqlCursorPagination() throws Exception {
+        File file = File.createTempFile("flights-cursor", ".db");
+        ConnectionPool pool = tiedFlightsDatabase(file, 95, 11);
+        try {
+            RouteIndex index;
+            try (Connection conn = pool.getConnection()) {
+                index = RouteIndex.load(conn);
+            }
+            SqlFlightSource sql = new SqlFlightSource(pool);
+            for (SortOrder order : SortOrder.values()) {
+                for (boolean nonstop : new boolean[]{false, true}) {
+                    //the keyset predicate has to cut each page where the index does, ties included
+                    List<Long> paged = new ArrayList<>();
+                    FlightPage fromSql = sql.page(1, 3, nonstop, order, null, 7);
+                    FlightPage fromIndex = index.page(1, 3, nonstop, order, null, 7);
+                    while (true) {
+                        assertEquals(flightNums(fromIndex.getFlights()), flightNums(fromSql.getFlights()));
+                        paged.addAll(flightNums(fromSql.getFlights()));
+                        assertEquals(fromIndex.hasNext(), fromSql.hasNext());
+                        if (!fromSql.hasNext()) {
+                            break;
+                        }
+                        fromSql = sql.page(1, 3, nonstop, order, fromSql.getNext(), 7);
+                        fromIndex = index.page(1, 3, nonstop, order, fromIndex.getNext(), 7);
+                    }
+                    assertEquals(flightNums(index.top(1, 3, nonstop, order, Integer.MAX_VALUE)), paged);
+                }
+            }
+
+            //a cursor from one order cannot be used with another
+            FlightPage cheapest = sql.page(1, 3, false, SortOrder.CHEAPEST, null, 10);
+            try {
+                sql.page(1, 3, false, SortOrder.FASTEST, cheapest.getNext(), 10);
+                fail("Expected the cursor to be rejected");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("CHEAPEST"));
+            }
+        } finally {
+            pool.close();
+            for (String suffix : new String[]{"", "-wal", "-shm"}) {
+                new File(file.getPath() + suffix).delete();
+            }
+        }
+    }
+
+    //a temporary database of flights from 1 to 3 whose keys often tie and whose IDs repeat
+    private static ConnectionPool tiedFlightsDatabase(File file, int numFlights, long seed) throws SQLException {
+        ConnectionPool pool = new ConnectionPool("jdbc:sqlite:" + file.getPath(), 2, 1000);
+        try (Connection conn = pool.getConnection()) {
+            SchemaMigrations.migrate(conn);
+        }
+        Random random = new Random(seed);
+        try (FlightBatchWriter writer = new FlightBatchWriter(pool, 50)) {
+            for (int i = 0; i < numFlights; i++) {
+                Flight flight = batchFlight("United");
+                if (i % 3 == 0) {
+                    flight.setVisitOrder(List.of(1, 3));
+                    flight.setNumStops(0);
+                }
+                flight.setDuration(1 + random.nextInt(6) * 0.5);
+                flight.setCost(100 + random.nextInt(10) * 25);
+                writer.add(flight, "UN" + i % 4);
+            }
+        }
+        return pool;
+    }
+
+    private static List<Long> flightNums(List<Flight> flights) {
+        List<Long> flightNums = new ArrayList<>();
+        for (Flight flight : flights) {
+            flightNums.add(flight.getFlightNum());
+        }
+        return flightNums;
+    }
+
     @Test
     public void testBCryptCheckPass() {
         String pass = "123456";
@@ -103,37 +1308,6 @@ public class TestCases {
      * @throws IOException, will be thrown if the file cannot be found
      */
     public DGraph read(String filename) throws IOException {
-
-        Scanner scanner = new Scanner(new File(filename));
-        String line = "";
-        //TODO: CLEAN THIS UP
-        String airlineNameStr = scanner.nextLine();
-        String[] airlineSplit = airlineNameStr.split("\\s");
-        String airlineName = airlineSplit[0];
-        // read comment lines if any
-        boolean comment = true;
-        while (comment) {
-            line = scanner.nextLine();
-            comment = line.startsWith("%");
-        }
-        String[] numCitiesStr = line.split("\\s+");
-        int numCities = Integer.parseInt(numCitiesStr[0]);
-        DGraph dGraph = new DGraph(numCities, airlineName);
-        //data section
-        while (scanner.hasNext()) {
-            line = scanner.nextLine();
-            if (line == null) break;
-            String[] str = line.split("\\s+");
-            int i = Integer.parseInt(str[0].trim());
-            int j = Integer.parseInt(str[1].trim());
-
-            double time = Double.parseDouble(str[2].trim());
-            double cost = Double.parseDouble((str[3].trim()));
-            dGraph.addEdge(i, j, time, cost);
-        }
-        scanner.close();
-        return dGraph;
+        return MtxLoader.load(filename);
     }
 }
-
-
@@ -0,0 +1,268 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * File: TimerWheel.java
+ *
+ * Purpose: Runs tasks after a delay, for very many tasks that are mostly
+ * cancelled before they are due (like seat holds that are confirmed in
+ * time). Instead of a scheduled task per timeout, time is cut into ticks and
+ * a timeout goes in bucket (deadline tick mod wheel size) of a ring of
+ * buckets, with a count of how many more times round the wheel it has to
+ * wait. Each tick looks at a single bucket. Scheduling and cancelling are
+ * both O(1), and expiring a timeout costs O(1) on the tick that reaches it.
+ *
+ * Any thread may schedule or cancel. New timeouts wait in a lock-free queue
+ * until the thread advancing the wheel files them into buckets, and
+ * cancelling only flips the timeout's state, which its bucket notices later.
+ * Only one thread advances the wheel at a time, either the wheel's own
+ * daemon thread after start(), or whoever calls advance(). Tasks run on that
+ * thread, so they should be short.
+ *
+ * Usage instructions:
+ *
+ * TimerWheel wheel = new TimerWheel(100, 512);   //100ms ticks, 512 buckets
+ * wheel.start();
+ * TimerWheel.Timeout timeout = wheel.schedule(() -> release(seats), 15, TimeUnit.MINUTES);
+ * timeout.cancel();                               //if it is no longer needed
+ */
+public class TimerWheel {
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    /**
+     * A scheduled task. Kept in a doubly linked list per bucket so it can be
+     * unlinked in O(1).
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        //only touched by the thread advancing the wheel
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        // Stops the task from running. False if it already ran or was cancelled.
+        public boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev == null) {
+                head = timeout.next;
+            } else {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.prev;
+            } else {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.bucket = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+
+    private final long tickMillis;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final LongSupplier clock;
+    private final long startMillis;
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    //the next tick to process, only moved by the thread advancing the wheel
+    private long currentTick;
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private volatile Thread worker;
+
+    public TimerWheel(long tickMillis, int wheelSize) {
+        this(tickMillis, wheelSize, System::currentTimeMillis);
+    }
+
+    // The clock is in milliseconds. Package-private so tests can control time.
+    TimerWheel(long tickMillis, int wheelSize, LongSupplier clock) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("tickMillis must be at least 1, got " + tickMillis);
+        }
+        if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two, got " + wheelSize);
+        }
+        this.tickMillis = tickMillis;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheelSize - 1;
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+    }
+
+    /**
+     * Purpose: Schedules a task to run once the delay has passed. It runs on
+     * the first tick at or after its deadline, so up to one tick late.
+     *
+     * @param task, is what to run
+     * @param delay, is how long to wait
+     * @param unit, is the unit of delay
+     * @return a handle to cancel the task with
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadlineMillis = clock.getAsLong() - startMillis + Math.max(0, unit.toMillis(delay));
+        //round up so a task never runs early
+        Timeout timeout = new Timeout(task, (deadlineMillis + tickMillis - 1) / tickMillis);
+        pending.incrementAndGet();
+        incoming.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Purpose: Processes every tick up to the current time, running the tasks
+     * that have come due.
+     *
+     * @return how many tasks ran
+     */
+    public synchronized int advance() {
+        long nowTick = (clock.getAsLong() - startMillis) / tickMillis;
+        int ran = 0;
+        while (currentTick <= nowTick) {
+            fileIncoming();
+            ran += expireBucket(wheel[(int) (currentTick & mask)]);
+            currentTick++;
+        }
+        return ran;
+    }
+
+    // Moves newly scheduled timeouts into their buckets.
+    private void fileIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.state.get() == CANCELLED) {
+                pending.decrementAndGet();
+                continue;
+            }
+            //already due ones go in the current bucket
+            long tick = Math.max(timeout.deadlineTick, currentTick);
+            timeout.remainingRounds = (tick - currentTick) / wheel.length;
+            wheel[(int) (tick & mask)].add(timeout);
+        }
+    }
+
+    private int expireBucket(Bucket bucket) {
+        int ran = 0;
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.state.get() == CANCELLED) {
+                bucket.remove(timeout);
+                pending.decrementAndGet();
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                bucket.remove(timeout);
+                pending.decrementAndGet();
+                if (timeout.state.compareAndSet(PENDING, EXPIRED)) {
+                    expired.incrementAndGet();
+                    ran++;
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException e) {
+                        System.out.println("Error: " + e);
+                    }
+                }
+            }
+            timeout = next;
+        }
+        return ran;
+    }
+
+    // Starts a daemon thread that advances the wheel every tick.
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    Thread.sleep(tickMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                advance();
+            }
+        }, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Stops the daemon thread. Tasks not yet due stay scheduled.
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = worker;
+            worker = null;
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    // Timeouts scheduled that have not yet run or been cleared away after cancelling.
+    public long getPending() {
+        return pending.get();
+    }
+
+    public long getExpired() {
+        return expired.get();
+    }
+
+    @Override
+    public String toString() {
+        return "TimerWheel{" +
+                "tickMillis=" + tickMillis +
+                ", buckets=" + wheel.length +
+                ", pending=" + getPending() +
+                ", expired=" + getExpired() +
+                '}';
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+
+/**
+ * File: TopK.java
+ *
+ * Purpose: Picks the k smallest of n items in order without sorting all n.
+ * It keeps a bounded max-heap of the best k seen so far; each new item is
+ * checked against the worst of those and only enters if it beats it. That
+ * is O(n log k) time and O(k) space, so the first page of results never pays
+ * for a full sort.
+ *
+ * Items are referred to by index, with compare(i, j) ordering them like a
+ * Comparator, so parallel primitive arrays can be ranked without boxing.
+ *
+ * Usage instructions:
+ *
+ * int[] best = TopK.smallest(costs.length, 10, (i, j) -> Double.compare(costs[i], costs[j]));
+ * List<Flight> page = TopK.smallest(flights, 10, SortOrder.FASTEST.comparator());
+ */
+public final class TopK {
+
+    private TopK() {
+    }
+
+    /**
+     * Purpose: Finds the k smallest of the items 0 to n - 1.
+     *
+     * @param n, is how many items there are
+     * @param k, is how many to keep
+     * @param compare, is negative if item i comes before item j
+     * @return the indexes of the min(n, k) smallest items, smallest first
+     */
+    public static int[] smallest(int n, int k, IntBinaryOperator compare) {
+        return smallest(n, k, i -> true, compare);
+    }
+
+    /**
+     * Purpose: Finds the k smallest of the items 0 to n - 1 that pass a test,
+     * e.g. those after the end of the previous page.
+     *
+     * @param n, is how many items there are
+     * @param k, is how many to keep
+     * @param include, is true for the items to consider
+     * @param compare, is negative if item i comes before item j
+     * @return the indexes of up to k smallest included items, smallest first
+     */
+    public static int[] smallest(int n, int k, IntPredicate include, IntBinaryOperator compare) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative, got " + k);
+        }
+        int[] heap = new int[Math.min(n, k)];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            if (!include.test(i)) {
+                continue;
+            }
+            if (size < heap.length) {
+                heap[size] = i;
+                siftUp(heap, size++, compare);
+            } else if (size > 0 && compare.applyAsInt(i, heap[0]) < 0) {
+                //beats the worst of the best k, so it takes its place
+                heap[0] = i;
+                siftDown(heap, 0, size, compare);
+            }
+        }
+        //pop the largest to the back until the heap is sorted smallest first
+        for (int end = size - 1; end > 0; end--) {
+            int largest = heap[0];
+            heap[0] = heap[end];
+            heap[end] = largest;
+            siftDown(heap, 0, end, compare);
+        }
+        return size == heap.length ? heap : Arrays.copyOf(heap, size);
+    }
+
+    /**
+     * Purpose: Finds the k smallest items of a list.
+     *
+     * @param items, is what to choose from
+     * @param k, is how many to keep
+     * @param comparator, is the order
+     * @return a new list of the min(size, k) smallest items, smallest first
+     */
+    public static <T> List<T> smallest(List<T> items, int k, Comparator<? super T> comparator) {
+        int[] best = smallest(items.size(), k, (i, j) -> comparator.compare(items.get(i), items.get(j)));
+        List<T> result = new ArrayList<>(best.length);
+        for (int i : best) {
+            result.add(items.get(i));
+        }
+        return result;
+    }
+
+    //the heap keeps the largest item at the root
+    private static void siftUp(int[] heap, int pos, IntBinaryOperator compare) {
+        int item = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (compare.applyAsInt(item, heap[parent]) <= 0) {
+                break;
+            }
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = item;
+    }
+
+    private static void siftDown(int[] heap, int pos, int size, IntBinaryOperator compare) {
+        int item = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            if (child + 1 < size && compare.applyAsInt(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (compare.applyAsInt(item, heap[child]) >= 0) {
+                break;
+            }
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = item;
+    }
+}
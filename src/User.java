@@ -15,10 +15,6 @@ import java.util.Objects;
 public class User {
 
 
-    private static final String DB_NAME = "flightres.db";
-    private static final String CONNECTION_STRING = "jdbc:sqlite:" + DB_NAME;
-
-
     private final String name;
     private String email;
     private String phone;
@@ -49,14 +45,19 @@ public class User {
     }
 
     public boolean generateLogin() {
+        String query = "INSERT INTO users (username, pass, email, phone) VALUES (?, ?, ?, ?)";
+        String hashedPW = hashPassword(password);
         try {
-            Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-            Statement statement = conn.createStatement();
-            String hashedPW = hashPassword(password);
-            String query = "INSERT INTO users (username, pass, email, phone) " +
-                    "VALUES('" + name + "', '" + hashedPW + "', '" + email + "', '" + phone +"')";
-            statement.executeUpdate(query);
-            return true;
+            return Database.run(conn -> {
+                try (PreparedStatement statement = conn.prepareStatement(query)) {
+                    statement.setString(1, name);
+                    statement.setString(2, hashedPW);
+                    statement.setString(3, email);
+                    statement.setString(4, phone);
+                    statement.executeUpdate();
+                    return true;
+                }
+            });
         } catch (SQLException e) {
             System.out.println("Error: " + e);
             return false;
@@ -66,16 +67,19 @@ public class User {
     public boolean validateLogin(String user, String pass) {
         boolean checkPass = false;
 
+        String checkPassQuery = "SELECT pass FROM users WHERE username = ?";
         try {
-            Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-            Statement statement = conn.createStatement();
-
-            String checkPassQuery = "SELECT pass FROM users WHERE username='" + user + "'";
-
-            ResultSet results = statement.executeQuery(checkPassQuery);
-            String hashedPass = results.getString("pass");
-            checkPass = checkPassword(pass, hashedPass);
-
+            String hashedPass = Database.run(conn -> {
+                try (PreparedStatement statement = conn.prepareStatement(checkPassQuery)) {
+                    statement.setString(1, user);
+                    try (ResultSet results = statement.executeQuery()) {
+                        return results.next() ? results.getString("pass") : null;
+                    }
+                }
+            });
+            if (hashedPass != null) {
+                checkPass = checkPassword(pass, hashedPass);
+            }
         } catch (SQLException e) {
             System.out.println("Login failed.");
 
@@ -85,17 +89,23 @@ public class User {
 
     public List<String> getCredentials(String user) {
         List<String> credentials = new ArrayList<>();
+        String getCreds = "SELECT email, phone FROM users WHERE username = ?";
         try {
-            Connection conn = DriverManager.getConnection(CONNECTION_STRING);
-            Statement statement = conn.createStatement();
-
-            String getCreds = "SELECT * FROM users WHERE username='" + user + "'";
-
-            ResultSet results = statement.executeQuery(getCreds);
-            String email = results.getString("email");
-            String phone = results.getString("phone");
-            credentials.add(email);
-            credentials.add(phone);
+            credentials = Database.run(conn -> {
+                List<String> found = new ArrayList<>();
+                try (PreparedStatement statement = conn.prepareStatement(getCreds)) {
+                    statement.setString(1, user);
+                    try (ResultSet results = statement.executeQuery()) {
+                        if (results.next()) {
+                            String email = results.getString("email");
+                            String phone = results.getString("phone");
+                            found.add(email);
+                            found.add(phone);
+                        }
+                    }
+                }
+                return found;
+            });
         } catch (SQLException e) {
             System.out.println("Error " + e);
         }